@@ -0,0 +1,193 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.crush;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import xyz.kvantum.crush.syntax.Comment;
+import xyz.kvantum.crush.syntax.IfStatement;
+import xyz.kvantum.crush.syntax.Include;
+import xyz.kvantum.crush.syntax.Macro;
+import xyz.kvantum.crush.syntax.MetaBlock;
+import xyz.kvantum.crush.syntax.Syntax;
+import xyz.kvantum.crush.syntax.Variable;
+import xyz.kvantum.server.api.util.ProviderFactory;
+import xyz.kvantum.server.api.util.VariableProvider;
+
+/**
+ * Compiles Crush templates into {@link CrushTemplate templates}. Includes, comments, meta blocks and macros don't
+ * depend on the request, so they are applied once, here. If statements, foreach loops and variables are turned into
+ * nodes, that are then rendered for every request.
+ */
+final class CrushCompiler
+{
+
+	private static final Map<String, ProviderFactory<? extends VariableProvider>> NO_FACTORIES = Collections
+			.emptyMap();
+
+	private final Syntax[] staticSyntax = { new Include(), new Comment() };
+	private final MetaBlock metaBlock = new MetaBlock();
+	private final Macro macro = new Macro();
+	private final Pattern ifPattern = new IfStatement().getPattern();
+	//
+	// The loop pattern of ForEachBlock only accepts bodies that no longer contain if statements, as the regular
+	// expression passes apply those first. Loops are compiled along with the if statements in their body here
+	//
+	private final Pattern forEachPattern = Pattern
+			.compile( "\\{#foreach ([A-Za-z0-9]*).([A-Za-z0-9]*) -> ([A-Za-z0-9]*)\\}([\\S\\s]*?)\\{/foreach\\}" );
+	private final Variable variable = new Variable();
+
+	private static String lowercase(final String string)
+	{
+		return string.toLowerCase( Locale.ENGLISH );
+	}
+
+	private static void addText(final List<CrushTemplate.Node> nodes, final String text, final int start,
+			final int end)
+	{
+		if ( start < end )
+		{
+			nodes.add( new CrushTemplate.Text( text.substring( start, end ) ) );
+		}
+	}
+
+	/**
+	 * Compile a template
+	 *
+	 * @param in Template source
+	 * @return Compiled template
+	 */
+	CrushTemplate compile(final String in)
+	{
+		String text = in;
+		for ( final Syntax syntax : this.staticSyntax )
+		{
+			if ( syntax.matches( text ) )
+			{
+				text = syntax.handle( text, null, NO_FACTORIES );
+			}
+		}
+		final List<String[]> meta = new ArrayList<>();
+		text = this.metaBlock.extract( text, (key, value) -> meta.add( new String[] { key, value } ) );
+		if ( this.macro.matches( text ) )
+		{
+			text = this.macro.handle( text, null, NO_FACTORIES );
+		}
+		final List<CrushTemplate.Node> nodes = new ArrayList<>();
+		this.compileBlocks( text, nodes, null );
+		return new CrushTemplate( meta, nodes, text.length() );
+	}
+
+	/**
+	 * Compile if statements and foreach loops. Whichever block starts first is compiled as a whole, with the blocks in
+	 * its body compiled as its children, so that an if statement inside a loop (or a loop inside an if statement)
+	 * doesn't split the surrounding block
+	 *
+	 * @param text Text to compile
+	 * @param nodes List that the compiled nodes are added to
+	 * @param placeholder Placeholder of the current loop item, or null if the text isn't part of a loop body
+	 */
+	private void compileBlocks(final String text, final List<CrushTemplate.Node> nodes,
+			@Nullable final String placeholder)
+	{
+		final Matcher ifMatcher = this.ifPattern.matcher( text );
+		final Matcher loopMatcher = this.forEachPattern.matcher( text );
+		boolean ifFound = ifMatcher.find();
+		boolean loopFound = loopMatcher.find();
+		int last = 0;
+		while ( ifFound || loopFound )
+		{
+			final boolean loop = loopFound && ( !ifFound || loopMatcher.start() < ifMatcher.start() );
+			final Matcher matcher = loop
+					? loopMatcher
+					: ifMatcher;
+			this.compileText( text, last, matcher.start(), nodes, placeholder );
+			final List<CrushTemplate.Node> children = new ArrayList<>();
+			if ( loop )
+			{
+				this.compileBlocks( matcher.group( 4 ), children, "{{" + matcher.group( 3 ) + "}}" );
+				nodes.add( new CrushTemplate.Loop( lowercase( matcher.group( 1 ) ), matcher.group( 2 ),
+						matcher.group( 3 ), children ) );
+			} else
+			{
+				this.compileBlocks( matcher.group( 5 ), children, placeholder );
+				nodes.add( new CrushTemplate.Conditional( lowercase( matcher.group( 3 ) ), matcher.group( 4 ),
+						matcher.group( 2 ).contains( "!" ), text.substring( matcher.start(), matcher.start( 5 ) ),
+						children ) );
+			}
+			last = matcher.end();
+			//
+			// Blocks that started inside the compiled block are part of its body
+			//
+			if ( ifFound && ifMatcher.start() < last )
+			{
+				ifFound = ifMatcher.find( last );
+			}
+			if ( loopFound && loopMatcher.start() < last )
+			{
+				loopFound = loopMatcher.find( last );
+			}
+		}
+		this.compileText( text, last, text.length(), nodes, placeholder );
+	}
+
+	private void compileText(final String text, final int start, final int end, final List<CrushTemplate.Node> nodes,
+			@Nullable final String placeholder)
+	{
+		int index = start;
+		int next;
+		while ( placeholder != null && ( next = text.indexOf( placeholder, index ) ) != -1
+				&& next + placeholder.length() <= end )
+		{
+			this.compileVariables( text, index, next, nodes );
+			nodes.add( new CrushTemplate.LoopItem() );
+			index = next + placeholder.length();
+		}
+		this.compileVariables( text, index, end, nodes );
+	}
+
+	private void compileVariables(final String text, final int start, final int end,
+			final List<CrushTemplate.Node> nodes)
+	{
+		final Matcher matcher = this.variable.getPattern().matcher( text ).region( start, end );
+		int last = start;
+		while ( matcher.find() )
+		{
+			addText( nodes, text, last, matcher.start() );
+			final String filter = matcher.group( 3 );
+			final boolean filtered = filter != null && filter.contains( " || " );
+			nodes.add( new CrushTemplate.Variable( lowercase( matcher.group( 1 ) ), matcher.group( 2 ), filtered,
+					filtered
+							? this.variable.getFilter( filter.substring( filter.indexOf( " || " ) + 4 ) )
+							: null, matcher.group() ) );
+			last = matcher.end();
+		}
+		addText( nodes, text, last, end );
+	}
+
+}
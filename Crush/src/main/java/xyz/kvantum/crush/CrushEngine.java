@@ -21,16 +21,12 @@
  */
 package xyz.kvantum.crush;
 
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import xyz.kvantum.crush.syntax.Comment;
-import xyz.kvantum.crush.syntax.ForEachBlock;
-import xyz.kvantum.crush.syntax.IfStatement;
-import xyz.kvantum.crush.syntax.Include;
-import xyz.kvantum.crush.syntax.Macro;
-import xyz.kvantum.crush.syntax.MetaBlock;
-import xyz.kvantum.crush.syntax.Syntax;
-import xyz.kvantum.crush.syntax.Variable;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.core.ServerImplementation;
 import xyz.kvantum.server.api.template.TemplateHandler;
@@ -39,7 +35,13 @@ public final class CrushEngine extends TemplateHandler
 {
 
 	private static CrushEngine instance;
-	final Collection<Syntax> syntaxCollection = new LinkedHashSet<>();
+	private final CrushCompiler compiler = new CrushCompiler();
+	//
+	// Compiled templates contain their includes, so they expire with them
+	//
+	private final Cache<String, CrushTemplate> templates = CacheBuilder.newBuilder()
+			.maximumSize( CoreConfig.Cache.cachedTemplatesMaxItems )
+			.expireAfterWrite( CoreConfig.Cache.cachedIncludesExpiry, TimeUnit.SECONDS ).build();
 
 	private CrushEngine()
 	{
@@ -55,16 +57,27 @@ public final class CrushEngine extends TemplateHandler
 		return instance;
 	}
 
-	public void onLoad()
+	/**
+	 * Get the compiled version of a template, compiling it if it hasn't been compiled yet. Requests for a template that
+	 * is being compiled wait for that compilation, rather than compiling it again.
+	 *
+	 * @param in Template source
+	 * @return Compiled template
+	 */
+	CrushTemplate getTemplate(final String in)
 	{
-		this.syntaxCollection.add( new Include() );
-		this.syntaxCollection.add( new Comment() );
-		this.syntaxCollection.add( new MetaBlock() );
-		this.syntaxCollection.add( new IfStatement() );
-		this.syntaxCollection.add( new ForEachBlock() );
-		this.syntaxCollection.add( new Variable() );
-		this.syntaxCollection.add( new Macro() );
+		try
+		{
+			return this.templates.get( in, () -> this.compiler.compile( in ) );
+		} catch ( final ExecutionException | UncheckedExecutionException e )
+		{
+			Throwables.throwIfUnchecked( e.getCause() );
+			throw new IllegalStateException( "Failed to compile template", e.getCause() );
+		}
+	}
 
+	public void onLoad()
+	{
 		ServerImplementation.getImplementation().getProcedure().addProcedure( "syntax", new SyntaxHandler( this ) );
 	}
 }
@@ -0,0 +1,374 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.crush;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import xyz.kvantum.crush.syntax.Filter;
+import xyz.kvantum.server.api.config.CoreConfig;
+import xyz.kvantum.server.api.core.ServerImplementation;
+import xyz.kvantum.server.api.logging.Logger;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.util.ProviderFactory;
+import xyz.kvantum.server.api.util.VariableProvider;
+
+/**
+ * A compiled Crush template. Everything that doesn't depend on the request has already been applied by the {@link
+ * CrushCompiler}, and what remains is a list of nodes that is rendered in a single pass.
+ */
+final class CrushTemplate
+{
+
+	private static final int WRITE_THRESHOLD = 8192;
+
+	private final List<String[]> meta;
+	private final Node[] nodes;
+	private final int lengthHint;
+
+	CrushTemplate(final List<String[]> meta, final List<Node> nodes, final int lengthHint)
+	{
+		this.meta = meta;
+		this.nodes = nodes.toArray( new Node[ 0 ] );
+		this.lengthHint = lengthHint;
+	}
+
+	private static void renderAll(final Node[] nodes, final StringBuilder out, final RenderContext context)
+	{
+		for ( final Node node : nodes )
+		{
+			node.render( out, context );
+		}
+	}
+
+	/**
+	 * Render the template
+	 *
+	 * @param request Request that the template is rendered for
+	 * @param factories Provider factories, by lowercase name
+	 * @return Rendered template
+	 */
+	String render(final AbstractRequest request,
+			final Map<String, ProviderFactory<? extends VariableProvider>> factories)
+	{
+		this.applyMeta( request );
+		final StringBuilder out = new StringBuilder( this.lengthHint );
+		renderAll( this.nodes, out, new RenderContext( request, factories ) );
+		return out.toString();
+	}
+
+	/**
+	 * Render the template into a writer. The output is written whenever a top level node has filled up the buffer,
+	 * so that the whole page never has to be held in memory
+	 *
+	 * @param request Request that the template is rendered for
+	 * @param factories Provider factories, by lowercase name
+	 * @param writer Writer that the rendered template is written to
+	 * @throws IOException If the output could not be written
+	 */
+	void render(final AbstractRequest request,
+			final Map<String, ProviderFactory<? extends VariableProvider>> factories, final Writer writer)
+			throws IOException
+	{
+		this.applyMeta( request );
+		final StringBuilder out = new StringBuilder( Math.min( this.lengthHint, WRITE_THRESHOLD ) );
+		final RenderContext context = new RenderContext( request, factories );
+		char[] chars = new char[ 0 ];
+		for ( final Node node : this.nodes )
+		{
+			node.render( out, context );
+			if ( out.length() >= WRITE_THRESHOLD )
+			{
+				chars = write( out, chars, writer );
+			}
+		}
+		write( out, chars, writer );
+	}
+
+	private static char[] write(final StringBuilder out, final char[] chars, final Writer writer)
+			throws IOException
+	{
+		final int length = out.length();
+		final char[] buffer = chars.length < length
+				? new char[ length ]
+				: chars;
+		out.getChars( 0, length, buffer, 0 );
+		writer.write( buffer, 0, length );
+		out.setLength( 0 );
+		return buffer;
+	}
+
+	private void applyMeta(final AbstractRequest request)
+	{
+		for ( final String[] entry : this.meta )
+		{
+			request.addMeta( entry[ 0 ], entry[ 1 ] );
+		}
+	}
+
+	interface Node
+	{
+
+		void render(StringBuilder out, RenderContext context);
+
+	}
+
+	/**
+	 * Resolves variable providers, at most once per render
+	 */
+	@RequiredArgsConstructor static final class RenderContext
+	{
+
+		private final AbstractRequest request;
+		private final Map<String, ProviderFactory<? extends VariableProvider>> factories;
+		private final Map<String, Optional<? extends VariableProvider>> providers = new HashMap<>();
+		private String item;
+
+		/**
+		 * Get a provider
+		 *
+		 * @param namespace Lowercase provider name
+		 * @return The provider, or null if there is no factory with the name
+		 */
+		@Nullable private Optional<? extends VariableProvider> getProvider(final String namespace)
+		{
+			Optional<? extends VariableProvider> provider = this.providers.get( namespace );
+			if ( provider == null )
+			{
+				final ProviderFactory<? extends VariableProvider> factory = this.factories.get( namespace );
+				if ( factory == null )
+				{
+					return null; // Nullable
+				}
+				provider = factory.get( this.request );
+				this.providers.put( namespace, provider );
+			}
+			return provider;
+		}
+	}
+
+	@RequiredArgsConstructor static final class Text implements Node
+	{
+
+		private final String text;
+
+		@Override public void render(final StringBuilder out, final RenderContext context)
+		{
+			out.append( this.text );
+		}
+	}
+
+	/**
+	 * {@code {#if provider.variable}...{/if}}. If the variable cannot be found, the block is left as it is
+	 */
+	static final class Conditional implements Node
+	{
+
+		private final String namespace;
+		private final String variable;
+		private final boolean negated;
+		private final String open;
+		private final Node[] children;
+
+		Conditional(final String namespace, final String variable, final boolean negated, final String open,
+				final List<Node> children)
+		{
+			this.namespace = namespace;
+			this.variable = variable;
+			this.negated = negated;
+			this.open = open;
+			this.children = children.toArray( new Node[ 0 ] );
+		}
+
+		private static boolean isTrue(final Object object)
+		{
+			if ( object instanceof Boolean )
+			{
+				return ( Boolean ) object;
+			} else if ( object instanceof String )
+			{
+				return object.toString().equalsIgnoreCase( "true" );
+			}
+			return object instanceof Number && ( ( Number ) object ).intValue() == 1;
+		}
+
+		@Override public void render(final StringBuilder out, final RenderContext context)
+		{
+			final Optional<? extends VariableProvider> provider = context.getProvider( this.namespace );
+			if ( provider == null || !provider.isPresent() || !provider.get().contains( this.variable ) )
+			{
+				out.append( this.open );
+				renderAll( this.children, out, context );
+				out.append( "{/if}" );
+			} else if ( isTrue( provider.get().get( this.variable ) ) != this.negated )
+			{
+				renderAll( this.children, out, context );
+			}
+		}
+	}
+
+	/**
+	 * {@code {#foreach provider.variable -> name}...{/foreach}}
+	 */
+	static final class Loop implements Node
+	{
+
+		private final String namespace;
+		private final String variable;
+		private final Node[] children;
+		private final String description;
+
+		Loop(final String namespace, final String variable, final String variableName, final List<Node> children)
+		{
+			this.namespace = namespace;
+			this.variable = variable;
+			this.children = children.toArray( new Node[ 0 ] );
+			this.description = namespace + "." + variable + " -> " + variableName;
+		}
+
+		@Override public void render(final StringBuilder out, final RenderContext context)
+		{
+			final int start = out.length();
+			final String previousItem = context.item;
+			try
+			{
+				final Optional<? extends VariableProvider> provider = context.getProvider( this.namespace );
+				if ( provider == null || !provider.isPresent() )
+				{
+					return;
+				}
+				final VariableProvider p = provider.get();
+				final boolean all = this.variable.equalsIgnoreCase( "ALL" );
+				if ( !all && !p.contains( this.variable ) )
+				{
+					return;
+				}
+				final Object object = all
+						? p.getAll().values()
+						: p.get( this.variable );
+				if ( object instanceof Object[] )
+				{
+					for ( final Object item : ( Object[] ) object )
+					{
+						this.renderItem( item, out, context );
+					}
+				} else if ( object instanceof Collection )
+				{
+					for ( final Object item : ( Collection ) object )
+					{
+						this.renderItem( item, out, context );
+					}
+				}
+			} catch ( final Exception e )
+			{
+				out.setLength( start );
+				ServerImplementation.getImplementation()
+						.log( "Failed to finish the for loop (" + this.description + ") -> " + e.getMessage() );
+			} finally
+			{
+				context.item = previousItem;
+			}
+		}
+
+		private void renderItem(final Object item, final StringBuilder out, final RenderContext context)
+		{
+			if ( item == null )
+			{
+				return;
+			}
+			context.item = item.toString();
+			renderAll( this.children, out, context );
+		}
+	}
+
+	/**
+	 * The current item of the surrounding loop
+	 */
+	static final class LoopItem implements Node
+	{
+
+		@Override public void render(final StringBuilder out, final RenderContext context)
+		{
+			out.append( context.item );
+		}
+	}
+
+	/**
+	 * {@code {{provider.variable}}}, optionally followed by {@code || FILTER}. If the provider exists, but doesn't
+	 * contain the variable, the variable is left as it is
+	 */
+	@RequiredArgsConstructor static final class Variable implements Node
+	{
+
+		private final String namespace;
+		private final String variable;
+		private final boolean filtered;
+		@Nullable private final Filter filter;
+		private final String raw;
+
+		@Override public void render(final StringBuilder out, final RenderContext context)
+		{
+			try
+			{
+				final Optional<? extends VariableProvider> provider = context.getProvider( this.namespace );
+				if ( provider == null )
+				{
+					if ( CoreConfig.debug )
+					{
+						Logger.debug( "Template requesting unknown variable factory [{}]", this.namespace );
+					}
+					return;
+				}
+				if ( !provider.isPresent() )
+				{
+					return;
+				}
+				final VariableProvider p = provider.get();
+				if ( !p.contains( this.variable ) )
+				{
+					out.append( this.raw );
+					return;
+				}
+				Object object = p.get( this.variable );
+				if ( this.filtered )
+				{
+					if ( this.filter == null )
+					{
+						throw new IllegalArgumentException( "Unknown filter in " + this.raw );
+					}
+					object = this.filter.handle( this.variable, object );
+				}
+				out.append( object.toString() );
+			} catch ( final Throwable e )
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
@@ -21,10 +21,11 @@
  */
 package xyz.kvantum.crush;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import xyz.kvantum.crush.syntax.Syntax;
 import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.template.TemplateSyntaxHandler;
 import xyz.kvantum.server.api.templates.TemplateManager;
@@ -45,7 +46,21 @@ public final class SyntaxHandler extends TemplateSyntaxHandler
 
 	@Override public String handle(final RequestHandler requestHandler, final AbstractRequest request, final String in)
 	{
-		String out = in;
+		//
+		// Templates are compiled once, and then rendered in a single pass
+		//
+		return crushEngine.getTemplate( in ).render( request, getFactories( requestHandler, request ) );
+	}
+
+	@Override protected void handle(final RequestHandler requestHandler, final AbstractRequest request,
+			final String in, final Writer out) throws IOException
+	{
+		crushEngine.getTemplate( in ).render( request, getFactories( requestHandler, request ), out );
+	}
+
+	private static Map<String, ProviderFactory<? extends VariableProvider>> getFactories(
+			final RequestHandler requestHandler, final AbstractRequest request)
+	{
 		final Map<String, ProviderFactory<? extends VariableProvider>> factories = new HashMap<>();
 		for ( final ProviderFactory<? extends VariableProvider> factory : TemplateManager.get().getProviders() )
 		{
@@ -58,16 +73,6 @@ public final class SyntaxHandler extends TemplateSyntaxHandler
 		}
 		factories.put( "request", request );
 		factories.putAll( request.getModels() );
-		// This is how the crush engine works.
-		// Quite simple, yet powerful!
-		for ( final Syntax syntax : crushEngine.syntaxCollection )
-		{
-			if ( syntax.matches( out ) )
-			{
-				out = syntax.handle( out, request, factories );
-			}
-		}
-
-		return out;
+		return factories;
 	}
 }
@@ -22,6 +22,7 @@
 package xyz.kvantum.crush.syntax;
 
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import xyz.kvantum.server.api.request.AbstractRequest;
@@ -49,4 +50,34 @@ final public class MetaBlock extends Syntax
 		}
 		return in;
 	}
+
+	/**
+	 * Remove all meta blocks from a template, passing the statements that they contain to a consumer. Used when
+	 * compiling templates, as the meta values don't depend on the request
+	 *
+	 * @param in Template
+	 * @param meta Consumer accepting the meta keys and values
+	 * @return The template, without meta blocks
+	 */
+	public String extract(final String in, final BiConsumer<String, String> meta)
+	{
+		final Matcher matcher = this.getPattern().matcher( in );
+		if ( !matcher.find() )
+		{
+			return in;
+		}
+		final StringBuilder out = new StringBuilder( in.length() );
+		int last = 0;
+		do
+		{
+			final Matcher statementMatcher = statement.getPattern().matcher( matcher.group( 1 ) );
+			while ( statementMatcher.find() )
+			{
+				meta.accept( statementMatcher.group( 1 ), statementMatcher.group( 2 ) );
+			}
+			out.append( in, last, matcher.start() );
+			last = matcher.end();
+		} while ( matcher.find() );
+		return out.append( in, last, in.length() ).toString();
+	}
 }
@@ -29,6 +29,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import xyz.kvantum.crush.syntax.filter.Javascript;
 import xyz.kvantum.crush.syntax.filter.List;
 import xyz.kvantum.crush.syntax.filter.Lowercase;
@@ -59,6 +60,17 @@ final public class Variable extends Syntax
 		}
 	}
 
+	/**
+	 * Get a filter by its name
+	 *
+	 * @param name Filter name (case insensitive)
+	 * @return The filter, or null if there is no filter with the name
+	 */
+	@Nullable public Filter getFilter(final String name)
+	{
+		return filters.get( name.toUpperCase( Locale.ENGLISH ) );
+	}
+
 	@Override public String process(String content, Matcher matcher, AbstractRequest r,
 			Map<String, ProviderFactory<? extends VariableProvider>> factories)
 	{
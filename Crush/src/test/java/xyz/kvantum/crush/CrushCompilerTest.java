@@ -0,0 +1,152 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.crush;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static xyz.kvantum.server.api.TestFixtures.request;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.crush.syntax.Comment;
+import xyz.kvantum.crush.syntax.ForEachBlock;
+import xyz.kvantum.crush.syntax.IfStatement;
+import xyz.kvantum.crush.syntax.Macro;
+import xyz.kvantum.crush.syntax.MetaBlock;
+import xyz.kvantum.crush.syntax.Syntax;
+import xyz.kvantum.crush.syntax.Variable;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.util.ProviderFactory;
+import xyz.kvantum.server.api.util.VariableProvider;
+
+class CrushCompilerTest
+{
+
+	private static final String TEMPLATE = "/* comment */{{: [title: Home] :}}<h1>{{user.name}}</h1>\n"
+			+ "{#if user.admin}<b>{{user.name || UPPERCASE}}</b>{/if}{#if !user.guest}member{/if}"
+			+ "{#if user.missing}kept {{user.name}}{/if}\n"
+			+ "{#foreach user.items -> item}<li>{{item}} of {{user.name}}</li>{/foreach}\n"
+			+ "{{user.unknown}} {#macro greet who}Hello {{who}}{/macro}#greet (\"World\")#";
+	private static final String NESTED_TEMPLATE = "{#foreach user.items -> item}<li>"
+			+ "{#if user.admin}<b>{{item}}</b>{/if}{{user.name}}</li>{/foreach}\n"
+			+ "{#if user.admin}<ul>{#foreach user.items -> entry}<li>{{entry}}</li>{/foreach}</ul>{/if}";
+
+	private static Map<String, ProviderFactory<? extends VariableProvider>> factories()
+	{
+		final Map<String, Object> user = new HashMap<>();
+		user.put( "name", "Alice" );
+		user.put( "admin", true );
+		user.put( "guest", "false" );
+		user.put( "items", Arrays.asList( "first", null, "second" ) );
+		final VariableProvider provider = new VariableProvider()
+		{
+			@Override public boolean contains(final String variable)
+			{
+				return user.containsKey( variable );
+			}
+
+			@Override public Object get(final String variable)
+			{
+				return user.get( variable );
+			}
+
+			@Override public Map<String, Object> getAll()
+			{
+				return user;
+			}
+		};
+		final Map<String, ProviderFactory<? extends VariableProvider>> factories = new HashMap<>();
+		factories.put( "user", new ProviderFactory<VariableProvider>()
+		{
+			@Override public Optional<VariableProvider> get(final AbstractRequest r)
+			{
+				return Optional.of( provider );
+			}
+
+			@Override public String providerName()
+			{
+				return "user";
+			}
+		} );
+		return factories;
+	}
+
+	/**
+	 * Render a template using the regular expression passes, which the compiled template should match exactly
+	 */
+	private static String interpret(final String template, final AbstractRequest request)
+	{
+		String expected = template;
+		for ( final Syntax syntax : new Syntax[] { new Comment(), new MetaBlock(), new IfStatement(),
+				new ForEachBlock(), new Variable(), new Macro() } )
+		{
+			if ( syntax.matches( expected ) )
+			{
+				expected = syntax.handle( expected, request, factories() );
+			}
+		}
+		return expected;
+	}
+
+	@Test void render()
+	{
+		final AbstractRequest expectedRequest = request();
+		final String expected = interpret( TEMPLATE, expectedRequest );
+
+		final AbstractRequest request = request();
+		final CrushTemplate template = new CrushCompiler().compile( TEMPLATE );
+		assertEquals( expected, template.render( request, factories() ) );
+		assertEquals( "Home", request.getMeta( "title" ) );
+		assertEquals( expectedRequest.getMeta( "title" ), request.getMeta( "title" ) );
+		// Rendering again gives the same result
+		assertEquals( expected, template.render( request(), factories() ) );
+	}
+
+	@Test void renderNestedBlocks()
+	{
+		//
+		// If statements inside loops, and loops inside if statements, don't split the surrounding block. The
+		// regular expression passes can't be compared against here, as their loop pattern spans both loops
+		//
+		assertEquals( "<li><b>first</b>Alice</li><li><b>second</b>Alice</li>\n<ul><li>first</li><li>second</li></ul>",
+				new CrushCompiler().compile( NESTED_TEMPLATE ).render( request(), factories() ) );
+	}
+
+	@Test void renderToWriter() throws IOException
+	{
+		final StringBuilder source = new StringBuilder();
+		for ( int i = 0; i < 500; i++ )
+		{
+			source.append( TEMPLATE.replace( "greet", "greet" + i ) );
+		}
+		final CrushTemplate template = new CrushCompiler().compile( source.toString() );
+		final StringWriter writer = new StringWriter();
+		template.render( request(), factories(), writer );
+		assertEquals( template.render( request(), factories() ), writer.toString() );
+	}
+
+}
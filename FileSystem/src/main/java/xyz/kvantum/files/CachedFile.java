@@ -63,4 +63,14 @@ public final class CachedFile
 	{
 		return this.bytes;
 	}
+
+	/**
+	 * Get the amount of bytes that the content consists of
+	 *
+	 * @return Content length
+	 */
+	public int getLength()
+	{
+		return this.bytes.length;
+	}
 }
@@ -21,30 +21,135 @@
  */
 package xyz.kvantum.server.implementation;
 
-import de.jungblut.datastructure.AsyncBufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
 import pw.stamina.causam.scan.method.model.Subscriber;
+import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.response.FinalizedResponse;
+import xyz.kvantum.server.api.util.AutoCloseable;
 
 /**
- * Streams to log/access.log
+ * Streams to log/access.log. Finalized responses are queued in a bounded buffer, and formatted and written by a
+ * dedicated thread. The file is flushed when the write buffer fills up, or once per flush interval. If the queue is
+ * full, new entries are dropped rather than blocking the request, and the amount of dropped entries is written to the
+ * log instead.
  */
-final class AccessLogStream extends PrintStream
+final class AccessLogStream extends AutoCloseable
 {
 
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final Writer writer;
+	private final BlockingQueue<FinalizedResponse> queue;
+	private final AtomicLong dropped = new AtomicLong( 0 );
+	private final long flushInterval;
+	private final Thread thread;
+	private volatile boolean running = true;
+
 	AccessLogStream(@NonNull final File logFolder) throws FileNotFoundException
 	{
-		super( new AsyncBufferedOutputStream( new FileOutputStream( new File( logFolder, "access.log" ), true ) ) );
+		this.writer = new BufferedWriter( new OutputStreamWriter(
+				new FileOutputStream( new File( logFolder, "access.log" ), true ), StandardCharsets.UTF_8 ),
+				Math.max( 1, CoreConfig.Logging.accessLogBufferSize ) );
+		this.queue = new ArrayBlockingQueue<>( Math.max( 1, CoreConfig.Logging.accessLogQueueSize ) );
+		this.flushInterval = Math.max( 1, CoreConfig.Logging.accessLogFlushInterval );
+		this.thread = new Thread( this::writeEntries, "access-log" );
+		this.thread.setDaemon( true );
+		this.thread.start();
 	}
 
 	@Subscriber @SuppressWarnings("unused") private void onRequestFinish(@NonNull final FinalizedResponse response)
 	{
-		this.println( response.toLogString() );
-		this.flush();
+		if ( !this.queue.offer( response ) )
+		{
+			this.dropped.incrementAndGet();
+		}
+	}
+
+	private void writeEntries()
+	{
+		final List<FinalizedResponse> batch = new ArrayList<>();
+		final StringBuilder line = new StringBuilder( 128 );
+		long lastFlush = System.currentTimeMillis();
+		boolean unflushed = false;
+		try
+		{
+			while ( this.running || !this.queue.isEmpty() )
+			{
+				final FinalizedResponse first = this.queue.poll( this.flushInterval, TimeUnit.MILLISECONDS );
+				if ( first != null )
+				{
+					batch.add( first );
+					this.queue.drainTo( batch );
+					this.write( batch, line );
+					batch.clear();
+					unflushed = true;
+				}
+				final long now = System.currentTimeMillis();
+				if ( unflushed && now - lastFlush >= this.flushInterval )
+				{
+					this.writer.flush();
+					lastFlush = now;
+					unflushed = false;
+				}
+			}
+		} catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		} catch ( final IOException e )
+		{
+			e.printStackTrace();
+		} finally
+		{
+			try
+			{
+				this.writer.close();
+			} catch ( final IOException e )
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void write(final List<FinalizedResponse> batch, final StringBuilder line) throws IOException
+	{
+		final long dropped = this.dropped.getAndSet( 0 );
+		if ( dropped > 0 )
+		{
+			this.writer.append( "# " ).append( String.valueOf( dropped ) )
+					.append( " entries were dropped, as the access log queue was full" ).append( LINE_SEPARATOR );
+		}
+		for ( final FinalizedResponse response : batch )
+		{
+			line.setLength( 0 );
+			response.appendLogString( line );
+			this.writer.append( line ).append( LINE_SEPARATOR );
+		}
+	}
+
+	@Override protected void handleClose()
+	{
+		this.running = false;
+		try
+		{
+			this.thread.join( this.flushInterval * 2 + 1000 );
+		} catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
 	}
 
 }
@@ -23,16 +23,32 @@ package xyz.kvantum.server.implementation;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import xyz.kvantum.files.CachedFile;
 import xyz.kvantum.files.Path;
 import xyz.kvantum.server.api.account.IAccount;
+import xyz.kvantum.server.api.cache.CacheApplicable;
+import xyz.kvantum.server.api.cache.CacheVariance;
 import xyz.kvantum.server.api.cache.CachedResponse;
 import xyz.kvantum.server.api.cache.ICacheManager;
 import xyz.kvantum.server.api.config.CoreConfig;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.response.ContentEncoding;
+import xyz.kvantum.server.api.response.Header;
 import xyz.kvantum.server.api.response.ResponseBody;
+import xyz.kvantum.server.api.util.AsciiString;
+import xyz.kvantum.server.api.util.TimeUtil;
 import xyz.kvantum.server.api.views.RequestHandler;
 
 /**
@@ -41,21 +57,49 @@ import xyz.kvantum.server.api.views.RequestHandler;
 @SuppressWarnings("ALL") public final class CacheManager implements ICacheManager
 {
 
+	private final Map<String, CompletableFuture<CachedResponse>> pendingBodies = new ConcurrentHashMap<>();
 	private final Cache<String, String> cachedIncludes;
 	private final Cache<String, CachedFile> cachedFiles;
 	private final Cache<String, CachedResponse> cachedBodies;
+	private final Cache<CachedResponse, PrecompiledResponse> precompiledResponses;
+	private final Cache<byte[], Map<ContentEncoding, byte[]>> encodedVariants;
 	private final Cache<Integer, IAccount> cachedAccounts;
 	private final Cache<String, Integer> cachedAccountIds;
+	private final OffHeapContentCache cachedContent = new OffHeapContentCache( CoreConfig.Cache.cachedContentMaxBytes,
+			CoreConfig.Buffer.fileTransferThreshold, CoreConfig.Cache.cachedContentExpiry );
 
 	public CacheManager()
 	{
 		cachedIncludes = Caffeine.newBuilder()
 				.expireAfterWrite( CoreConfig.Cache.cachedIncludesExpiry, TimeUnit.SECONDS )
 				.maximumSize( CoreConfig.Cache.cachedIncludesMaxItems ).build();
+		//
+		// Static files are served from the off-heap content cache, so the file and body caches
+		// only hold what has to be available on the heap, and are bounded by their size
+		//
 		cachedFiles = Caffeine.newBuilder().expireAfterWrite( CoreConfig.Cache.cachedFilesExpiry, TimeUnit.SECONDS )
-				.maximumSize( CoreConfig.Cache.cachedFilesMaxItems ).build();
+				.maximumWeight( CoreConfig.Cache.cachedFilesMaxBytes )
+				.<String, CachedFile>weigher( (key, value) -> value.getLength() ).build();
+		//
+		// Precompiled responses are bound to the cached bodies, and are released as soon as the body is
+		// discarded. The weak keys make sure that images created for bodies that were discarded while
+		// being served are released as well
+		//
+		precompiledResponses = Caffeine.newBuilder().weakKeys()
+				.<CachedResponse, PrecompiledResponse>removalListener( (key, value, cause) -> value.release() )
+				.build();
+		//
+		// Encoded variants are bound to the identity of the body they were created from,
+		// which makes them live exactly as long as the cached response they belong to
+		//
+		encodedVariants = Caffeine.newBuilder().weakKeys().maximumWeight( CoreConfig.Cache.cachedBodiesMaxBytes )
+				.<byte[], Map<ContentEncoding, byte[]>>weigher( (key, value) -> key.length ).build();
 		cachedBodies = Caffeine.newBuilder().expireAfterWrite( CoreConfig.Cache.cachedBodiesExpiry, TimeUnit.SECONDS )
-				.maximumSize( CoreConfig.Cache.cachedBodiesMaxItems ).build();
+				.maximumWeight( CoreConfig.Cache.cachedBodiesMaxBytes )
+				.<String, CachedResponse>weigher( (key, value) -> value.getBytes().length )
+				.<String, CachedResponse>removalListener(
+						(key, value, cause) -> precompiledResponses.invalidate( value ) )
+				.build();
 		cachedAccounts = Caffeine.newBuilder()
 				.expireAfterWrite( CoreConfig.Cache.cachedAccountsExpiry, TimeUnit.SECONDS )
 				.maximumSize( CoreConfig.Cache.cachedAccountsMaxItems ).build();
@@ -106,19 +150,164 @@ import xyz.kvantum.server.api.views.RequestHandler;
 		this.cachedIncludes.put( group, document );
 	}
 
-	@Override public boolean hasCache(@NonNull final RequestHandler view)
+	/**
+	 * Get the key that the response to a request is cached under
+	 *
+	 * @param view RequestHandler that serves the request
+	 * @param request Incoming request
+	 * @return Cache key
+	 */
+	private static String getKey(final RequestHandler view, final AbstractRequest request)
 	{
-		return this.cachedBodies.getIfPresent( view.toString() ) != null;
+		return view.toString() + '\n' + getVariance( view ).getKey( request );
 	}
 
-	@Override public void setCache(@NonNull final RequestHandler view, @NonNull final ResponseBody responseBody)
+	private static CacheVariance getVariance(final RequestHandler view)
 	{
-		this.cachedBodies.put( view.toString(), new CachedResponse( responseBody ) );
+		return view instanceof CacheApplicable
+				? ( ( CacheApplicable ) view ).getCacheVariance()
+				: CacheVariance.NONE;
 	}
 
-	@Override public CachedResponse getCache(@NonNull final RequestHandler view)
+	@Override public boolean hasCache(@NonNull final RequestHandler view, @NonNull final AbstractRequest request)
 	{
-		return this.cachedBodies.getIfPresent( view.toString() );
+		return this.cachedBodies.getIfPresent( getKey( view, request ) ) != null;
+	}
+
+	@Override public void setCache(@NonNull final RequestHandler view, @NonNull final AbstractRequest request,
+			@NonNull final ResponseBody responseBody)
+	{
+		this.cachedBodies.put( getKey( view, request ), createCachedResponse( view, responseBody ) );
+	}
+
+	@Nullable @Override public CachedResponse getCache(@NonNull final RequestHandler view,
+			@NonNull final AbstractRequest request)
+	{
+		return this.cachedBodies.getIfPresent( getKey( view, request ) );
+	}
+
+	@Nullable @Override public ResponseBody getCache(@NonNull final RequestHandler view,
+			@NonNull final AbstractRequest request,
+			@NonNull final Function<AbstractRequest, ? extends ResponseBody> generator)
+	{
+		final String key = getKey( view, request );
+
+		CachedResponse cachedResponse = this.cachedBodies.getIfPresent( key );
+		if ( cachedResponse != null )
+		{
+			return cachedResponse;
+		}
+
+		//
+		// Only one request generates the missing body. The others wait for it,
+		// and generate the body themselves if it couldn't be cached
+		//
+		final CompletableFuture<CachedResponse> pending = new CompletableFuture<>();
+		final CompletableFuture<CachedResponse> existing = this.pendingBodies.putIfAbsent( key, pending );
+		if ( existing != null )
+		{
+			cachedResponse = existing.join();
+			return cachedResponse == null
+					? generator.apply( request )
+					: cachedResponse;
+		}
+
+		try
+		{
+			//
+			// The body may have been cached after the first lookup
+			//
+			if ( ( cachedResponse = this.cachedBodies.getIfPresent( key ) ) != null )
+			{
+				return cachedResponse;
+			}
+			final ResponseBody body = generator.apply( request );
+			if ( body != null && body.getFile() == null && body.getStream() == null )
+			{
+				cachedResponse = createCachedResponse( view, body );
+				this.cachedBodies.put( key, cachedResponse );
+			}
+			return body;
+		} finally
+		{
+			this.pendingBodies.remove( key, pending );
+			pending.complete( cachedResponse );
+		}
+	}
+
+	/**
+	 * Create a cached response, along with its validators. The Vary headers of the view are added to the generated body
+	 * as well. The header of a cached response is shared between the requests that it is served to, so the validators
+	 * are added before the response is made available
+	 *
+	 * @param view RequestHandler that generated the body
+	 * @param body Generated body
+	 * @return Cached response
+	 */
+	private static CachedResponse createCachedResponse(final RequestHandler view, final ResponseBody body)
+	{
+		final Header bodyHeader = body.getHeader();
+		for ( final AsciiString varyHeader : getVariance( view ).getVaryHeaders() )
+		{
+			if ( !bodyHeader.getMultiple( Header.HEADER_VARY ).contains( varyHeader ) )
+			{
+				bodyHeader.set( Header.HEADER_VARY, varyHeader, true );
+			}
+		}
+		final CachedResponse cachedResponse = new CachedResponse( body );
+		final Header header = cachedResponse.getHeader();
+		if ( !header.hasHeader( Header.HEADER_ETAG ) )
+		{
+			final String checksum = Md5Handler.checksum( cachedResponse.getBytes() );
+			header.set( Header.HEADER_CONTENT_MD5, checksum );
+			header.set( Header.HEADER_ETAG, checksum );
+		}
+		if ( !header.hasHeader( Header.HEADER_LAST_MODIFIED ) )
+		{
+			header.set( Header.HEADER_LAST_MODIFIED, TimeUtil.getHTTPTimeStamp() );
+		}
+		return cachedResponse;
+	}
+
+	/**
+	 * Get the precompiled wire images of a cached response
+	 *
+	 * @param response Cached response
+	 * @return Precompiled response, which may not contain any images yet
+	 */
+	PrecompiledResponse getPrecompiledResponse(@NonNull final CachedResponse response)
+	{
+		return this.precompiledResponses.get( response, key -> new PrecompiledResponse( this.cachedContent ) );
+	}
+
+	/**
+	 * Get the content of a file from the off-heap content cache, reading it if it isn't cached. Only files that are
+	 * smaller than the file transfer threshold are cached
+	 *
+	 * @param file File
+	 * @param contentEncoding Content coding to compress the content with, or null
+	 * @return Content that has to be released by the caller, or null if the file is too large to be cached
+	 * @throws IOException If the file cannot be read or compressed
+	 */
+	@Nullable ByteBuf getFileContent(@NonNull final Path file, @Nullable final ContentEncoding contentEncoding)
+			throws IOException
+	{
+		return contentEncoding == null
+				? this.cachedContent.getFileContent( file )
+				: this.cachedContent.getEncodedFileContent( file, contentEncoding,
+						content -> KvantumServerHandler.encode( content, contentEncoding, false ) );
+	}
+
+	/**
+	 * Get the encoded (compressed) variants of a cached response body
+	 *
+	 * @param body Identity body
+	 * @return Modifiable map containing the encoded variants
+	 */
+	Map<ContentEncoding, byte[]> getEncodedVariants(@NonNull final byte[] body)
+	{
+		return this.encodedVariants
+				.get( body, key -> Collections.synchronizedMap( new EnumMap<>( ContentEncoding.class ) ) );
 	}
 
 	@Override public void removeFileCache(@NonNull final Path path)
@@ -0,0 +1,168 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+import xyz.kvantum.server.api.response.StreamingContent;
+
+/**
+ * Output stream that {@link StreamingContent} is written to. The data is buffered and sent to the channel in chunks,
+ * using chunked transfer encoding unless the connection is closed once the response has been sent. Writing blocks
+ * while the channel isn't writable, which bounds the memory used by a response regardless of its size.
+ */
+final class ChunkedResponseStream extends OutputStream
+{
+
+	private static final byte[] CRLF = "\r\n".getBytes( StandardCharsets.US_ASCII );
+	private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes( StandardCharsets.US_ASCII );
+	// Room for the chunk size line and the trailing line break
+	private static final int CHUNK_OVERHEAD = 12;
+
+	private final ChannelHandlerContext context;
+	private final boolean chunked;
+	private final byte[] buffer;
+	private int position;
+	private boolean closed;
+
+	/**
+	 * The amount of content bytes that have been sent, excluding the chunk framing
+	 */
+	@Getter private long written;
+
+	/**
+	 * Create a new stream
+	 *
+	 * @param context Channel context
+	 * @param chunked Whether or not chunked transfer encoding should be used
+	 * @param chunkSize Maximum amount of content bytes per chunk
+	 */
+	ChunkedResponseStream(final ChannelHandlerContext context, final boolean chunked, final int chunkSize)
+	{
+		this.context = context;
+		this.chunked = chunked;
+		this.buffer = new byte[ chunkSize ];
+	}
+
+	@Override public void write(final int b) throws IOException
+	{
+		if ( this.position == this.buffer.length )
+		{
+			this.flush();
+		}
+		this.buffer[ this.position++ ] = ( byte ) b;
+	}
+
+	@Override public void write(final byte[] bytes, int offset, int length) throws IOException
+	{
+		while ( length > 0 )
+		{
+			if ( this.position == this.buffer.length )
+			{
+				this.flush();
+			}
+			final int amount = Math.min( length, this.buffer.length - this.position );
+			System.arraycopy( bytes, offset, this.buffer, this.position, amount );
+			this.position += amount;
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	/**
+	 * Send the buffered data as a chunk
+	 *
+	 * @throws IOException If the connection has been closed
+	 */
+	@Override public void flush() throws IOException
+	{
+		if ( this.closed )
+		{
+			throw new IOException( "The stream has been closed" );
+		}
+		if ( this.position == 0 )
+		{
+			return;
+		}
+		final ByteBuf chunk = this.context.alloc().buffer( this.position + CHUNK_OVERHEAD );
+		if ( this.chunked )
+		{
+			chunk.writeBytes( Integer.toHexString( this.position ).getBytes( StandardCharsets.US_ASCII ) );
+			chunk.writeBytes( CRLF );
+		}
+		chunk.writeBytes( this.buffer, 0, this.position );
+		if ( this.chunked )
+		{
+			chunk.writeBytes( CRLF );
+		}
+		this.written += this.position;
+		this.position = 0;
+		this.send( chunk );
+	}
+
+	/**
+	 * Send the remaining data, followed by the last chunk
+	 *
+	 * @throws IOException If the connection has been closed
+	 */
+	@Override public void close() throws IOException
+	{
+		if ( this.closed )
+		{
+			return;
+		}
+		this.flush();
+		this.closed = true;
+		if ( this.chunked )
+		{
+			this.send( this.context.alloc().buffer( LAST_CHUNK.length ).writeBytes( LAST_CHUNK ) );
+		}
+	}
+
+	private void send(final ByteBuf buf) throws IOException
+	{
+		if ( !this.context.channel().isActive() )
+		{
+			buf.release();
+			throw new IOException( "The connection has been closed" );
+		}
+		final ChannelFuture future = this.context.writeAndFlush( buf );
+		//
+		// Wait for the outbound buffer to drain before accepting more
+		// data, if the client isn't keeping up
+		//
+		if ( !this.context.channel().isWritable() )
+		{
+			future.awaitUninterruptibly();
+		}
+		if ( future.isDone() && !future.isSuccess() )
+		{
+			throw new IOException( "Failed to send chunk", future.cause() );
+		}
+	}
+
+}
@@ -21,100 +21,66 @@
  */
 package xyz.kvantum.server.implementation;
 
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
-import lombok.Data;
-import lombok.NonNull;
 import pw.stamina.causam.scan.method.model.Subscriber;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.core.ServerImplementation;
 import xyz.kvantum.server.api.events.ConnectionEstablishedEvent;
 import xyz.kvantum.server.api.logging.Logger;
-import xyz.kvantum.server.api.memguard.LeakageProne;
-import xyz.kvantum.server.api.memguard.MemoryGuard;
-import xyz.kvantum.server.api.util.Assert;
 
-final class ConnectionThrottle implements LeakageProne
+/**
+ * Throttles connections per address. Every address has a token bucket that holds up to {@link
+ * CoreConfig.Throttle#limit} connections, and that refills at the same rate over {@link CoreConfig.Throttle#timeSpan}.
+ * Buckets are kept in a bounded cache, and a bucket that has been idle for a full time span is full again, so it is
+ * simply dropped.
+ */
+final class ConnectionThrottle
 {
 
-	private static ConnectionThrottle instance;
-	private static long timeLimit = -1;
-	private final Map<String, AttemptMapping> attemptMapping;
+	private final Cache<String, Bucket> buckets;
+	//
+	// Time it takes to refill a single token, and how far ahead of the current time the bucket may be
+	// booked before it is empty
+	//
+	private final long emissionInterval;
+	private final long burstTolerance;
 
-	private ConnectionThrottle()
+	ConnectionThrottle(final long timeSpanNanos, final int limit, final long maxAddresses)
 	{
-		//
-		// Make sure that the instance is set!
-		//
-		setInstance( this );
-		//
-		// Initialize the map
-		//
-		attemptMapping = new ConcurrentHashMap<>();
-		//
-		// Register in the memory guard
-		//
-		MemoryGuard.getInstance().register( this );
-		//
-		// Register event listener
-		//
-		ServerImplementation.getImplementation().getEventBus().register( this );
+		this.emissionInterval = Math.max( 1L, timeSpanNanos / limit );
+		this.burstTolerance = this.emissionInterval * ( limit - 1 );
+		this.buckets = Caffeine.newBuilder().maximumSize( maxAddresses )
+				.expireAfterAccess( timeSpanNanos, TimeUnit.NANOSECONDS ).build();
 	}
 
 	static void initialize()
 	{
-		setInstance( new ConnectionThrottle() );
-	}
-
-	private static void setInstance(@NonNull final ConnectionThrottle instance)
-	{
-		ConnectionThrottle.instance = instance;
-	}
-
-	private static long getTimeLimit()
-	{
-		if ( timeLimit == -1 )
-		{
-			timeLimit = TimeUnit.valueOf( CoreConfig.Throttle.timeUnit ).toMillis( CoreConfig.Throttle.timeSpan );
-		}
-		return timeLimit;
-	}
-
-	private static boolean shouldThrottle(final String address)
-	{
-		Assert.notNull( instance );
 		//
 		// Make sure that throttling is enabled
 		//
 		if ( CoreConfig.Throttle.limit <= 0 )
 		{
-			return false;
-		}
-		final AttemptMapping attemptMapping;
-		if ( !instance.attemptMapping.containsKey( address ) )
-		{
-			attemptMapping = new AttemptMapping();
-			attemptMapping.setFirstAttempt( new AtomicLong( System.currentTimeMillis() ) );
-			attemptMapping.setIp( address );
-			instance.attemptMapping.put( address, attemptMapping );
-		} else
-		{
-			attemptMapping = instance.attemptMapping.get( address );
-		}
-
-		if ( instance.shouldReset( attemptMapping ) )
-		{
-			attemptMapping.getTotalAttempts().set( 0 );
-			attemptMapping.getFirstAttempt().set( System.currentTimeMillis() );
+			return;
 		}
+		final long timeSpan = TimeUnit.valueOf( CoreConfig.Throttle.timeUnit )
+				.toNanos( CoreConfig.Throttle.timeSpan );
+		ServerImplementation.getImplementation().getEventBus().register(
+				new ConnectionThrottle( timeSpan, CoreConfig.Throttle.limit, CoreConfig.Throttle.maxAddresses ) );
+	}
 
-		final int totalAttempts = attemptMapping.getTotalAttempts().incrementAndGet();
-		return totalAttempts > CoreConfig.Throttle.limit;
+	/**
+	 * Take a token from the bucket of an address
+	 *
+	 * @param address Connection address
+	 * @param now Current time, in nanoseconds
+	 * @return true if the bucket is empty, and the connection should be throttled
+	 */
+	boolean shouldThrottle(final String address, final long now)
+	{
+		return !this.buckets.get( address, key -> new Bucket( now ) ).tryAcquire( now );
 	}
 
 	@Subscriber @SuppressWarnings("unused") private void listenForConnections(
@@ -124,28 +90,41 @@ final class ConnectionThrottle implements LeakageProne
 		{
 			Logger.debug( "Checking for throttle for {}", establishedEvent.getIp() );
 		}
-		establishedEvent.setCancelled( shouldThrottle( establishedEvent.getIp() ) );
+		establishedEvent.setCancelled( shouldThrottle( establishedEvent.getIp(), System.nanoTime() ) );
 	}
 
-	private boolean shouldReset(@NonNull final AttemptMapping attemptMapping)
+	/**
+	 * Token bucket, stored as the time at which it will be full again. Taking a token pushes that time one emission
+	 * interval forward, and the bucket is empty once it is more than the burst tolerance ahead of the current time.
+	 */
+	private final class Bucket
 	{
-		final long timeDifference = System.currentTimeMillis() - attemptMapping.getFirstAttempt().get();
-		return getTimeLimit() <= timeDifference;
-	}
 
-	@Override public void cleanUp()
-	{
-		final List<AttemptMapping> shouldReset = this.attemptMapping.values().stream().filter( this::shouldReset )
-				.collect( Collectors.toList() );
-		shouldReset.forEach( a -> attemptMapping.remove( a.getIp() ) );
-		Logger.info( "Cleaned up {} stored connection attempts!", shouldReset.size() );
-	}
+		private final AtomicLong fullAt;
 
-	@Data private static final class AttemptMapping
-	{
-		private String ip;
-		private AtomicLong firstAttempt;
-		private AtomicInteger totalAttempts = new AtomicInteger( 0 );
+		private Bucket(final long now)
+		{
+			this.fullAt = new AtomicLong( now );
+		}
+
+		private boolean tryAcquire(final long now)
+		{
+			while ( true )
+			{
+				final long current = this.fullAt.get();
+				final long start = current - now < 0
+						? now
+						: current;
+				if ( start - now > burstTolerance )
+				{
+					return false;
+				}
+				if ( this.fullAt.compareAndSet( current, start + emissionInterval ) )
+				{
+					return true;
+				}
+			}
+		}
 	}
 
 }
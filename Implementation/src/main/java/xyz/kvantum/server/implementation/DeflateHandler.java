@@ -0,0 +1,63 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Handler for deflate (zlib) compression
+ */
+@UtilityClass final class DeflateHandler
+{
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Compress bytes using the zlib format, as used by the "deflate" content coding
+	 *
+	 * @param data Bytes to compress
+	 * @return Compressed data
+	 */
+	static byte[] compress(@NonNull final byte[] data)
+	{
+		final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+		try
+		{
+			deflater.setInput( data );
+			deflater.finish();
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream( data.length / 2 + 16 );
+			final byte[] buffer = new byte[ BUFFER_SIZE ];
+			while ( !deflater.finished() )
+			{
+				outputStream.write( buffer, 0, deflater.deflate( buffer ) );
+			}
+			return outputStream.toByteArray();
+		} finally
+		{
+			deflater.end();
+		}
+	}
+
+}
@@ -22,11 +22,25 @@
 package xyz.kvantum.server.implementation;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.ReferenceCountUtil;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -39,6 +53,7 @@ import java.security.cert.CertificateException;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
 import lombok.NonNull;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.logging.Logger;
@@ -78,6 +93,9 @@ final class HTTPSThread extends Thread
 			keyManagerFactory.init( keyStore, CoreConfig.SSL.keyStorePassword.toCharArray() );
 			final SSLContext sslContext = SSLContext.getInstance( "TLS" );
 			sslContext.init( keyManagerFactory.getKeyManagers(), null, null );
+			final SslContext http2SslContext = CoreConfig.HTTP2.enable
+					? createHttp2SslContext( keyManagerFactory )
+					: null;
 
 			this.serverBootstrap = new ServerBootstrap();
 			serverBootstrap.group( bossGroup, workerGroup )
@@ -86,11 +104,20 @@ final class HTTPSThread extends Thread
 					{
 						@Override protected void initChannel(final SocketChannel ch) throws Exception
 						{
+							if ( http2SslContext != null )
+							{
+								// The remaining handlers are added once the protocol has been negotiated
+								ch.pipeline().addLast( http2SslContext.newHandler( ch.alloc() ) );
+								ch.pipeline().addLast( new KvantumReadTimeoutHandler() );
+								ch.pipeline().addLast( new Http2NegotiationHandler() );
+								return;
+							}
 							final SSLEngine sslEngine = sslContext.createSSLEngine();
 							sslEngine.setUseClientMode( false );
 							sslEngine.setNeedClientAuth( false );
 							ch.pipeline().addLast( new SslHandler( sslEngine ) );
 							ch.pipeline().addLast( new KvantumReadTimeoutHandler() );
+							ch.pipeline().addLast( new ChunkedWriteHandler() );
 							ch.pipeline().addLast( new KvantumServerHandler( ProtocolType.HTTPS ) );
 						}
 					} );
@@ -100,6 +127,35 @@ final class HTTPSThread extends Thread
 		}
 	}
 
+	/**
+	 * Create a SSL context that offers HTTP/2 and HTTP/1.1 through ALPN. ALPN is provided by OpenSSL when it is
+	 * available, and by the JDK otherwise
+	 *
+	 * @param keyManagerFactory Key manager factory
+	 * @return Created context, or null if ALPN isn't supported by the runtime
+	 */
+	private static SslContext createHttp2SslContext(final KeyManagerFactory keyManagerFactory)
+	{
+		final SslContext sslContext;
+		try
+		{
+			sslContext = SslContextBuilder.forServer( keyManagerFactory ).sslProvider( OpenSsl.isAlpnSupported()
+					? SslProvider.OPENSSL
+					: SslProvider.JDK ).ciphers( Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE )
+					.applicationProtocolConfig( new ApplicationProtocolConfig( Protocol.ALPN,
+							SelectorFailureBehavior.NO_ADVERTISE, SelectedListenerFailureBehavior.ACCEPT,
+							ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1 ) ).build();
+			// The JDK provider only fails once an engine is created, if ALPN isn't available
+			ReferenceCountUtil.release( sslContext.newEngine( ByteBufAllocator.DEFAULT ) );
+		} catch ( final SSLException | RuntimeException e )
+		{
+			Logger.warn( "ALPN is not supported by the runtime, HTTP/2 will not be offered over SSL: {}",
+					e.getMessage() );
+			return null;
+		}
+		return sslContext;
+	}
+
 	void close()
 	{
 		try
@@ -73,8 +73,12 @@ import xyz.kvantum.server.implementation.error.KvantumInitializationException;
 				{
 					@Override protected void initChannel(final SocketChannel ch) throws Exception
 					{
-						ch.pipeline().addLast( new KvantumReadTimeoutHandler() )
-								.addLast( new KvantumServerHandler( ProtocolType.HTTP ) );
+						ch.pipeline().addLast( new KvantumReadTimeoutHandler() );
+						if ( CoreConfig.HTTP2.enable )
+						{
+							ch.pipeline().addLast( new Http2PriorKnowledgeHandler() );
+						}
+						ch.pipeline().addLast( new KvantumServerHandler( ProtocolType.HTTP ) );
 					}
 				} );
 	}
@@ -0,0 +1,62 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import xyz.kvantum.server.api.util.ProtocolType;
+
+/**
+ * Sets up the pipeline of a SSL connection, once the application protocol has been negotiated through ALPN. Clients
+ * that don't support ALPN are served over HTTP/1.1.
+ */
+final class Http2NegotiationHandler extends ApplicationProtocolNegotiationHandler
+{
+
+	Http2NegotiationHandler()
+	{
+		super( ApplicationProtocolNames.HTTP_1_1 );
+	}
+
+	@Override protected void configurePipeline(final ChannelHandlerContext context, final String protocol)
+	{
+		if ( ApplicationProtocolNames.HTTP_2.equals( protocol ) )
+		{
+			context.pipeline().addLast( KvantumHttp2Handler.create( ProtocolType.HTTPS ) );
+		} else if ( ApplicationProtocolNames.HTTP_1_1.equals( protocol ) )
+		{
+			context.pipeline().addLast( new ChunkedWriteHandler() );
+			context.pipeline().addLast( new KvantumServerHandler( ProtocolType.HTTPS ) );
+		} else
+		{
+			throw new IllegalStateException( "Unknown application protocol: " + protocol );
+		}
+		//
+		// The connection was already active when the handlers were added, so
+		// they have to be told about it
+		//
+		context.fireChannelActive();
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import java.util.List;
+import xyz.kvantum.server.api.util.ProtocolType;
+
+/**
+ * Inspects the first bytes received on a plain connection. Clients that know that the server speaks HTTP/2 start the
+ * connection with the HTTP/2 connection preface, in which case the {@link KvantumServerHandler} is replaced with a
+ * {@link KvantumHttp2Handler}. Other connections are left to the HTTP/1.1 handler.
+ */
+final class Http2PriorKnowledgeHandler extends ByteToMessageDecoder
+{
+
+	private static final ByteBuf PREFACE = Http2CodecUtil.connectionPrefaceBuf();
+
+	@Override protected void decode(final ChannelHandlerContext context, final ByteBuf in, final List<Object> out)
+	{
+		final int length = Math.min( in.readableBytes(), PREFACE.readableBytes() );
+		if ( !ByteBufUtil.equals( in, in.readerIndex(), PREFACE, PREFACE.readerIndex(), length ) )
+		{
+			// The received bytes are passed on once this handler has been removed
+			context.pipeline().remove( this );
+		} else if ( length == PREFACE.readableBytes() )
+		{
+			context.pipeline()
+					.replace( KvantumServerHandler.class, null, KvantumHttp2Handler.create( ProtocolType.HTTP ) );
+			context.pipeline().remove( this );
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import lombok.Getter;
+
+/**
+ * Output stream that sends the body of a HTTP/2 response as data frames. The data is buffered and sent in chunks, and
+ * at most one chunk is waiting for the flow control window of the stream at any time, which bounds the memory used by
+ * a response regardless of its size. Must not be used from the channel event loop.
+ */
+final class Http2ResponseStream extends OutputStream
+{
+
+	private final KvantumHttp2Handler handler;
+	private final ChannelHandlerContext context;
+	private final int streamId;
+	private final byte[] buffer;
+	private int position;
+	private boolean closed;
+	private ChannelFuture previous;
+
+	/**
+	 * The amount of content bytes that have been sent
+	 */
+	@Getter private long written;
+
+	/**
+	 * Create a new stream
+	 *
+	 * @param handler Connection handler
+	 * @param context Channel context
+	 * @param streamId Stream that the response is sent on
+	 * @param chunkSize Maximum amount of content bytes per chunk
+	 */
+	Http2ResponseStream(final KvantumHttp2Handler handler, final ChannelHandlerContext context, final int streamId,
+			final int chunkSize)
+	{
+		this.handler = handler;
+		this.context = context;
+		this.streamId = streamId;
+		this.buffer = new byte[ chunkSize ];
+	}
+
+	@Override public void write(final int b) throws IOException
+	{
+		if ( this.position == this.buffer.length )
+		{
+			this.flush();
+		}
+		this.buffer[ this.position++ ] = ( byte ) b;
+	}
+
+	@Override public void write(final byte[] bytes, int offset, int length) throws IOException
+	{
+		while ( length > 0 )
+		{
+			if ( this.position == this.buffer.length )
+			{
+				this.flush();
+			}
+			final int amount = Math.min( length, this.buffer.length - this.position );
+			System.arraycopy( bytes, offset, this.buffer, this.position, amount );
+			this.position += amount;
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	/**
+	 * Send the buffered data as a data frame
+	 *
+	 * @throws IOException If the stream has been reset
+	 */
+	@Override public void flush() throws IOException
+	{
+		if ( this.closed )
+		{
+			throw new IOException( "The stream has been closed" );
+		}
+		if ( this.position == 0 )
+		{
+			return;
+		}
+		final ByteBuf chunk = this.context.alloc().buffer( this.position ).writeBytes( this.buffer, 0, this.position );
+		this.written += this.position;
+		this.position = 0;
+		this.send( chunk, false );
+	}
+
+	/**
+	 * Send the remaining data, and end the stream
+	 *
+	 * @throws IOException If the stream has been reset
+	 */
+	@Override public void close() throws IOException
+	{
+		if ( this.closed )
+		{
+			return;
+		}
+		this.flush();
+		this.closed = true;
+		this.send( Unpooled.EMPTY_BUFFER, true );
+	}
+
+	private void send(final ByteBuf buf, final boolean endOfStream) throws IOException
+	{
+		//
+		// Wait for the previous chunk to be written before handing over
+		// another one, if the client isn't keeping up
+		//
+		if ( this.previous != null )
+		{
+			this.previous.awaitUninterruptibly();
+			if ( !this.previous.isSuccess() )
+			{
+				buf.release();
+				throw new IOException( "Failed to send data frame", this.previous.cause() );
+			}
+		}
+		this.previous = this.handler.writeData( this.context, this.streamId, buf, endOfStream );
+	}
+
+}
@@ -0,0 +1,603 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http2.AbstractHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
+import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.cache.CachedResponse;
+import xyz.kvantum.server.api.config.CoreConfig;
+import xyz.kvantum.server.api.core.ServerImplementation;
+import xyz.kvantum.server.api.events.ConnectionEstablishedEvent;
+import xyz.kvantum.server.api.exceptions.KvantumException;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.request.Request;
+import xyz.kvantum.server.api.request.RequestCompiler;
+import xyz.kvantum.server.api.response.ContentEncoding;
+import xyz.kvantum.server.api.response.Header;
+import xyz.kvantum.server.api.response.HeaderOption;
+import xyz.kvantum.server.api.response.Response;
+import xyz.kvantum.server.api.response.ResponseBody;
+import xyz.kvantum.server.api.response.StreamingContent;
+import xyz.kvantum.server.api.socket.SocketContext;
+import xyz.kvantum.server.api.util.AsciiString;
+import xyz.kvantum.server.api.util.ProtocolType;
+
+/**
+ * HTTP/2 counterpart of {@link KvantumServerHandler}. Every stream is mapped onto a {@link Request}, which is answered
+ * by the request handlers in the request worker pool, just like HTTP/1.1 requests. The frames and the HPACK header
+ * compression are taken care of by netty.
+ */
+final class KvantumHttp2Handler extends Http2ConnectionHandler
+{
+
+	private static final AsciiString HOST = AsciiString.of( "host" );
+	private static final AsciiString COOKIE = AsciiString.of( "cookie" );
+	private static final AsciiString ACCEPT_ENCODING = AsciiString.of( "Accept-Encoding" );
+	private static final String AUTHORITY = ":authority";
+	// Headers that are specific to HTTP/1.x connections, and are not allowed in HTTP/2
+	private static final Collection<String> CONNECTION_HEADERS = new HashSet<>(
+			Arrays.asList( "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade" ) );
+	private static final Map<HeaderOption, String> HEADER_NAMES = new ConcurrentHashMap<>();
+
+	private final ProtocolType protocolType;
+	private final Map<Integer, PendingRequest> pendingRequests = new HashMap<>();
+	private SocketContext socketContext;
+
+	private KvantumHttp2Handler(final Http2ConnectionDecoder decoder, final Http2ConnectionEncoder encoder,
+			final Http2Settings initialSettings, final ProtocolType protocolType)
+	{
+		super( decoder, encoder, initialSettings );
+		this.protocolType = protocolType;
+	}
+
+	/**
+	 * Create a new handler for a HTTP/2 connection
+	 *
+	 * @param protocolType Underlying protocol, which is HTTPS for h2 and HTTP for h2c
+	 * @return Created handler
+	 */
+	static KvantumHttp2Handler create(final ProtocolType protocolType)
+	{
+		return new Builder( protocolType ).build();
+	}
+
+	@Override public void handlerAdded(final ChannelHandlerContext context) throws Exception
+	{
+		this.socketContext = new SocketContext( this.protocolType, context.channel().remoteAddress(),
+				() -> context.channel().isOpen() && context.channel().isActive() );
+		super.handlerAdded( context );
+	}
+
+	@Override public void channelActive(final ChannelHandlerContext context) throws Exception
+	{
+		final ConnectionEstablishedEvent connectionEstablishedEvent = new ConnectionEstablishedEvent(
+				this.socketContext.getIP() );
+		ServerImplementation.getImplementation().getEventBus().emit( connectionEstablishedEvent );
+		if ( connectionEstablishedEvent.isCancelled() )
+		{
+			context.close();
+		}
+		super.channelActive( context );
+	}
+
+	@Override public void channelInactive(final ChannelHandlerContext context) throws Exception
+	{
+		this.pendingRequests.values().forEach( PendingRequest::release );
+		this.pendingRequests.clear();
+		super.channelInactive( context );
+	}
+
+	/**
+	 * Write a data frame. Must not be called from the channel event loop, if the returned future is to be awaited.
+	 *
+	 * @param context Channel context
+	 * @param streamId Stream
+	 * @param data Data, which is released once it has been written
+	 * @param endOfStream Whether or not this is the last frame of the stream
+	 * @return Future that is completed once the data has been written
+	 */
+	ChannelFuture writeData(final ChannelHandlerContext context, final int streamId, final ByteBuf data,
+			final boolean endOfStream)
+	{
+		final ChannelPromise promise = context.newPromise();
+		context.executor().execute( () -> {
+			this.encoder().writeData( context, streamId, data, 0, endOfStream, promise );
+			context.flush();
+		} );
+		return promise;
+	}
+
+	private void writeHeaders(final ChannelHandlerContext context, final int streamId, final Http2Headers headers,
+			final boolean endOfStream)
+	{
+		context.executor().execute( () -> {
+			this.encoder().writeHeaders( context, streamId, headers, 0, endOfStream, context.newPromise() );
+			context.flush();
+		} );
+	}
+
+	private void reset(final ChannelHandlerContext context, final int streamId, final Http2Error error)
+	{
+		context.executor().execute( () -> {
+			this.resetStream( context, streamId, error.code(), context.newPromise() );
+			context.flush();
+		} );
+	}
+
+	/**
+	 * Answer a stream with an empty response, for requests that cannot be mapped onto a {@link Request}
+	 */
+	private void writeStatus(final ChannelHandlerContext context, final int streamId, final AsciiString status)
+	{
+		this.writeHeaders( context, streamId, new DefaultHttp2Headers().status( getStatusCode( status ) )
+				.setInt( HttpHeaderNames.CONTENT_LENGTH, 0 ), true );
+	}
+
+	private void readHeaders(final ChannelHandlerContext context, final int streamId, final Http2Headers headers,
+			final boolean endOfStream)
+	{
+		//
+		// Trailing headers are ignored, but may end the stream
+		//
+		final PendingRequest existing = this.pendingRequests.get( streamId );
+		if ( existing != null )
+		{
+			if ( endOfStream )
+			{
+				this.pendingRequests.remove( streamId );
+				this.dispatch( context, streamId, existing );
+			}
+			return;
+		}
+
+		final CharSequence method = headers.method();
+		final CharSequence path = headers.path();
+		if ( method == null || path == null || path.length() == 0 || !isResourceValid( path ) )
+		{
+			this.reset( context, streamId, Http2Error.PROTOCOL_ERROR );
+			return;
+		}
+		final Optional<HttpMethod> httpMethod = method.length() == 0
+				? Optional.empty()
+				: HttpMethod.getByName( method.toString() );
+		if ( !httpMethod.isPresent() )
+		{
+			this.writeStatus( context, streamId, Header.STATUS_NOT_ALLOWED );
+			return;
+		}
+
+		final Request request = new Request( this.socketContext );
+		RequestCompiler.compileQuery( request, httpMethod.get(), path.toString() );
+		for ( final Map.Entry<CharSequence, CharSequence> entry : headers )
+		{
+			final String name = entry.getKey().toString();
+			final AsciiString key;
+			if ( AUTHORITY.equals( name ) )
+			{
+				key = HOST;
+			} else if ( name.startsWith( ":" ) )
+			{
+				continue;
+			} else
+			{
+				key = AsciiString.of( name, false );
+			}
+			//
+			// Fields that are sent more than once are combined, like they would
+			// have been in HTTP/1.1. Cookies may be split into several fields.
+			//
+			final String separator = COOKIE.equals( key )
+					? "; "
+					: ", ";
+			request.getHeaders().merge( key, AsciiString.of( entry.getValue().toString(), false ),
+					( first, second ) -> AsciiString.of( first + separator + second, false ) );
+		}
+
+		final PendingRequest pendingRequest = new PendingRequest( request );
+		if ( endOfStream )
+		{
+			this.dispatch( context, streamId, pendingRequest );
+		} else
+		{
+			this.pendingRequests.put( streamId, pendingRequest );
+		}
+	}
+
+	private void readData(final ChannelHandlerContext context, final int streamId, final ByteBuf data,
+			final boolean endOfStream)
+	{
+		final PendingRequest pendingRequest = this.pendingRequests.get( streamId );
+		if ( pendingRequest == null )
+		{
+			return;
+		}
+		if ( pendingRequest.body == null )
+		{
+			pendingRequest.body = context.alloc().buffer( data.readableBytes() );
+		}
+		if ( pendingRequest.body.readableBytes() + data.readableBytes() >= CoreConfig.Limits.limitPostBasicSize )
+		{
+			this.pendingRequests.remove( streamId ).release();
+			this.writeStatus( context, streamId, Header.STATUS_ENTITY_TOO_LARGE );
+			return;
+		}
+		pendingRequest.body.writeBytes( data );
+		if ( endOfStream )
+		{
+			this.pendingRequests.remove( streamId );
+			this.dispatch( context, streamId, pendingRequest );
+		}
+	}
+
+	private void dispatch(final ChannelHandlerContext context, final int streamId,
+			final PendingRequest pendingRequest)
+	{
+		final Request request = pendingRequest.request;
+		if ( pendingRequest.body != null )
+		{
+			RequestParser.readPostRequest( request, pendingRequest.body );
+			pendingRequest.release();
+		}
+		try
+		{
+			request.onCompileFinish();
+		} catch ( final Exception e )
+		{
+			this.writeStatus( context, streamId, Header.STATUS_BAD_REQUEST );
+			return;
+		}
+		if ( CoreConfig.debug )
+		{
+			request.dumpRequest();
+		}
+
+		final WorkerContext workerContext = new WorkerContext( ServerImplementation.getImplementation(),
+				ServerImplementation.getImplementation().getProcedure().getInstance() );
+		workerContext.setSocketContext( this.socketContext );
+		workerContext.setRequest( request );
+
+		//
+		// Streams are answered by the request worker pool, just like HTTP/1.1 requests,
+		// and are answered in the order that they are completed
+		//
+		SimpleServer.requestWorkerPool.execute( () -> {
+			try
+			{
+				KvantumServerHandler.determineRequestHandler( workerContext );
+				KvantumServerHandler.writeResponse( workerContext );
+			} catch ( final ReturnStatus returnStatus )
+			{
+				final Response response = new Response();
+				response.getHeader().clear();
+				response.getHeader().setStatus( returnStatus.getStatus() );
+				workerContext.setBody( response );
+				workerContext.setBytes( response.getBytes() );
+			} catch ( final Throwable throwable )
+			{
+				new KvantumException( "Failed to handle HTTP/2 stream", throwable ).printStackTrace();
+				this.writeStatus( context, streamId, Header.STATUS_INTERNAL_ERROR );
+				return;
+			}
+			this.sendResponse( context, streamId, workerContext );
+		} );
+	}
+
+	private void sendResponse(final ChannelHandlerContext context, final int streamId,
+			final WorkerContext workerContext)
+	{
+		workerContext.determineContentEncoding();
+		ContentEncoding contentEncoding = workerContext.getContentEncoding();
+		final ResponseBody body = workerContext.getBody();
+		byte[] bytes = workerContext.getBytes();
+		final Path file = body.getFile();
+		final StreamingContent stream = body.getStream();
+
+		//
+		// The header is copied, as cached bodies share theirs between requests
+		//
+		final Header header = body.getHeader().copy();
+		final boolean notModified = KvantumServerHandler
+				.applyValidators( workerContext, header, bytes, file, stream );
+		// Range requests are only supported over HTTP/1.1
+		header.remove( Header.HEADER_ACCEPT_RANGES );
+		header.remove( Header.HEADER_CONTENT_LENGTH );
+		if ( notModified )
+		{
+			header.setStatus( Header.STATUS_NOT_MODIFIED );
+			for ( final HeaderOption option : KvantumServerHandler.NOT_MODIFIED_EXCLUDED_HEADERS )
+			{
+				header.remove( option );
+			}
+			contentEncoding = null;
+		}
+
+		//
+		// Streams are compressed while they are being written, and small files
+		// are compressed once and written from the off-heap content cache
+		//
+		ByteBuf content = null;
+		if ( contentEncoding != null && stream == null )
+		{
+			try
+			{
+				if ( file == null )
+				{
+					bytes = KvantumServerHandler.encode( bytes, contentEncoding, body instanceof CachedResponse );
+				} else if ( ( content = KvantumServerHandler.getCachedContent( file, contentEncoding ) ) == null )
+				{
+					contentEncoding = null;
+				}
+			} catch ( final IOException e )
+			{
+				new KvantumException( "( " + contentEncoding + " ) Failed to compress the bytes" ).printStackTrace();
+				contentEncoding = null;
+			}
+		}
+		if ( contentEncoding != null )
+		{
+			header.set( Header.HEADER_CONTENT_ENCODING, contentEncoding.getName() );
+		}
+		if ( workerContext.isCompressible() && !header.getMultiple( Header.HEADER_VARY ).contains( ACCEPT_ENCODING ) )
+		{
+			header.set( Header.HEADER_VARY, ACCEPT_ENCODING, true );
+		}
+
+		long length = 0;
+		if ( !notModified && stream == null )
+		{
+			if ( content != null )
+			{
+				length = content.readableBytes();
+			} else
+			{
+				length = file == null
+						? bytes.length
+						: file.length();
+			}
+			header.set( Header.HEADER_CONTENT_LENGTH, String.valueOf( length ) );
+		}
+
+		final Http2Headers headers = new DefaultHttp2Headers().status( getStatusCode( header.getStatus() ) );
+		for ( final Map.Entry<HeaderOption, AsciiString> entry : header.entries() )
+		{
+			final String name = HEADER_NAMES.computeIfAbsent( entry.getKey(),
+					option -> option.toString().toLowerCase( Locale.ENGLISH ) );
+			if ( !CONNECTION_HEADERS.contains( name ) )
+			{
+				headers.add( name, entry.getValue() );
+			}
+		}
+
+		final boolean hasBody = !notModified && workerContext.getRequest().getQuery().getMethod().hasBody() && (
+				stream != null || length > 0 );
+		this.writeHeaders( context, streamId, headers, !hasBody );
+		if ( !hasBody && content != null )
+		{
+			content.release();
+		} else if ( hasBody )
+		{
+			if ( content != null )
+			{
+				this.writeData( context, streamId, content, true );
+			} else if ( file == null && stream == null )
+			{
+				this.writeData( context, streamId, Unpooled.wrappedBuffer( bytes ), true );
+			} else
+			{
+				try
+				{
+					length = this.writeBody( context, streamId, file, stream, contentEncoding );
+				} catch ( final IOException e )
+				{
+					new KvantumException( "Failed to write the response body", e ).printStackTrace();
+					this.reset( context, streamId, Http2Error.INTERNAL_ERROR );
+				}
+			}
+		}
+
+		workerContext.getRequest().setValid( false );
+		KvantumServerHandler.emitFinalizedResponse( workerContext, header.getStatus(), ( int ) length );
+	}
+
+	/**
+	 * Write a body that is either read from the file system, or generated while it is being sent
+	 *
+	 * @return The amount of bytes that the content consisted of
+	 */
+	private long writeBody(final ChannelHandlerContext context, final int streamId, final Path file,
+			final StreamingContent stream, final ContentEncoding contentEncoding) throws IOException
+	{
+		if ( file != null )
+		{
+			// Small files are written from the off-heap content cache
+			final ByteBuf content = KvantumServerHandler.getCachedContent( file, null );
+			if ( content != null )
+			{
+				final int written = content.readableBytes();
+				this.writeData( context, streamId, content, true );
+				return written;
+			}
+		}
+		final Http2ResponseStream responseStream = new Http2ResponseStream( this, context, streamId,
+				CoreConfig.Buffer.streamChunkSize );
+		if ( file != null )
+		{
+			try ( final OutputStream closeable = responseStream )
+			{
+				Files.copy( file.getJavaPath(), closeable );
+			}
+			return responseStream.getWritten();
+		}
+		final OutputStream outputStream;
+		if ( contentEncoding == ContentEncoding.GZIP )
+		{
+			outputStream = new GZIPOutputStream( responseStream, CoreConfig.Buffer.streamChunkSize, true );
+		} else if ( contentEncoding == ContentEncoding.DEFLATE )
+		{
+			outputStream = new DeflaterOutputStream( responseStream, true );
+		} else
+		{
+			outputStream = responseStream;
+		}
+		try ( final OutputStream closeable = outputStream )
+		{
+			stream.writeTo( closeable );
+		} catch ( final IOException e )
+		{
+			throw e;
+		} catch ( final Exception e )
+		{
+			throw new IOException( "Failed to generate the streamed content", e );
+		}
+		return responseStream.getWritten();
+	}
+
+	private static CharSequence getStatusCode(final AsciiString status)
+	{
+		final int space = status.toString().indexOf( ' ' );
+		return space == -1
+				? status
+				: status.subSequence( 0, space );
+	}
+
+	private static boolean isResourceValid(final CharSequence path)
+	{
+		for ( int i = 0; i < path.length(); i++ )
+		{
+			final char character = path.charAt( i );
+			if ( character > 127 || !RequestParser.isResourceCharacter( ( byte ) character ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A request whose body is still being received
+	 */
+	@RequiredArgsConstructor private static final class PendingRequest
+	{
+
+		private final Request request;
+		private ByteBuf body;
+
+		private void release()
+		{
+			if ( this.body != null )
+			{
+				this.body.release();
+				this.body = null;
+			}
+		}
+	}
+
+	private final class FrameListener extends Http2FrameAdapter
+	{
+
+		@Override public int onDataRead(final ChannelHandlerContext context, final int streamId, final ByteBuf data,
+				final int padding, final boolean endOfStream)
+		{
+			final int processed = data.readableBytes() + padding;
+			readData( context, streamId, data, endOfStream );
+			return processed;
+		}
+
+		@Override public void onHeadersRead(final ChannelHandlerContext context, final int streamId,
+				final Http2Headers headers, final int padding, final boolean endOfStream)
+		{
+			readHeaders( context, streamId, headers, endOfStream );
+		}
+
+		@Override public void onHeadersRead(final ChannelHandlerContext context, final int streamId,
+				final Http2Headers headers, final int streamDependency, final short weight, final boolean exclusive,
+				final int padding, final boolean endOfStream)
+		{
+			readHeaders( context, streamId, headers, endOfStream );
+		}
+
+		@Override public void onRstStreamRead(final ChannelHandlerContext context, final int streamId,
+				final long errorCode)
+		{
+			final PendingRequest pendingRequest = pendingRequests.remove( streamId );
+			if ( pendingRequest != null )
+			{
+				pendingRequest.release();
+			}
+		}
+	}
+
+	private static final class Builder extends AbstractHttp2ConnectionHandlerBuilder<KvantumHttp2Handler, Builder>
+	{
+
+		private final ProtocolType protocolType;
+
+		private Builder(final ProtocolType protocolType)
+		{
+			this.protocolType = protocolType;
+			this.initialSettings( new Http2Settings().maxConcurrentStreams( CoreConfig.HTTP2.maxConcurrentStreams ) );
+		}
+
+		@Override public KvantumHttp2Handler build()
+		{
+			return super.build();
+		}
+
+		@Override protected KvantumHttp2Handler build(final Http2ConnectionDecoder decoder,
+				final Http2ConnectionEncoder encoder, final Http2Settings initialSettings)
+		{
+			final KvantumHttp2Handler handler = new KvantumHttp2Handler( decoder, encoder, initialSettings,
+					this.protocolType );
+			this.frameListener( handler.new FrameListener() );
+			return handler;
+		}
+	}
+
+}
@@ -21,16 +21,59 @@
  */
 package xyz.kvantum.server.implementation;
 
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import java.util.concurrent.TimeUnit;
 import xyz.kvantum.server.api.config.CoreConfig;
 
+/**
+ * Closes connections that haven't sent any data within the configured timeout. The timeout is suspended while a
+ * request is being answered, as no data is read from the channel in the mean time.
+ */
 final class KvantumReadTimeoutHandler extends ReadTimeoutHandler
 {
 
 	KvantumReadTimeoutHandler()
 	{
-		super( CoreConfig.timeout, TimeUnit.valueOf( CoreConfig.timeoutUnit ) );
+		this( CoreConfig.timeout, TimeUnit.valueOf( CoreConfig.timeoutUnit ) );
+	}
+
+	KvantumReadTimeoutHandler(final long timeout, final TimeUnit unit)
+	{
+		super( timeout, unit );
+	}
+
+	/**
+	 * Remove the read timeout from the pipeline of a handler, if it has one
+	 *
+	 * @param context Context of the handler that stops reading
+	 * @return The removed timeout handler, or null if there was none
+	 */
+	static KvantumReadTimeoutHandler suspend(final ChannelHandlerContext context)
+	{
+		final ChannelPipeline pipeline = context.pipeline();
+		final KvantumReadTimeoutHandler handler = pipeline.get( KvantumReadTimeoutHandler.class );
+		if ( handler != null )
+		{
+			pipeline.remove( handler );
+		}
+		return handler;
+	}
+
+	/**
+	 * Add a read timeout in front of a handler, the timer starts over from the moment that it is added
+	 *
+	 * @param context Context of the handler that resumes reading
+	 * @param suspended The handler that was removed by {@link #suspend(ChannelHandlerContext)}
+	 */
+	static void resume(final ChannelHandlerContext context, final KvantumReadTimeoutHandler suspended)
+	{
+		if ( context.pipeline().get( KvantumReadTimeoutHandler.class ) == null )
+		{
+			context.pipeline().addBefore( context.name(), null,
+					new KvantumReadTimeoutHandler( suspended.getReaderIdleTimeInMillis(), TimeUnit.MILLISECONDS ) );
+		}
 	}
 
 }
@@ -22,20 +22,42 @@
 package xyz.kvantum.server.implementation;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedNioFile;
 import io.netty.handler.timeout.ReadTimeoutException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.SocketAddress;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import xyz.kvantum.files.Path;
 import xyz.kvantum.server.api.cache.CacheApplicable;
+import xyz.kvantum.server.api.cache.CachedResponse;
+import xyz.kvantum.server.api.cache.ICacheManager;
+import xyz.kvantum.server.api.cache.ResponseValidator;
+import xyz.kvantum.server.api.cache.ValidatorProvider;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.config.Message;
 import xyz.kvantum.server.api.core.ServerImplementation;
@@ -43,12 +65,16 @@ import xyz.kvantum.server.api.core.WorkerProcedure;
 import xyz.kvantum.server.api.events.ConnectionEstablishedEvent;
 import xyz.kvantum.server.api.logging.Logger;
 import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
 import xyz.kvantum.server.api.request.Request;
+import xyz.kvantum.server.api.response.ByteRange;
+import xyz.kvantum.server.api.response.ContentEncoding;
 import xyz.kvantum.server.api.response.FinalizedResponse;
 import xyz.kvantum.server.api.response.Header;
 import xyz.kvantum.server.api.response.HeaderOption;
 import xyz.kvantum.server.api.response.Response;
 import xyz.kvantum.server.api.response.ResponseBody;
+import xyz.kvantum.server.api.response.StreamingContent;
 import xyz.kvantum.server.api.socket.SocketContext;
 import xyz.kvantum.server.api.util.AsciiString;
 import xyz.kvantum.server.api.util.Assert;
@@ -75,12 +101,29 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 	private static final AsciiString KEEP_ALIVE = AsciiString.of( "keep-alive" );
 	private static final AsciiString CLOSE = AsciiString.of( "close" );
 	private static final AsciiString CONNECTION = AsciiString.of( "connection" );
+	private static final AsciiString RANGE = AsciiString.of( "range" );
+	private static final AsciiString IF_RANGE = AsciiString.of( "if-range" );
+	private static final AsciiString BYTES = AsciiString.of( "bytes" );
+	private static final AsciiString ACCEPT_ENCODING = AsciiString.of( "Accept-Encoding" );
+	private static final AsciiString CHUNKED = AsciiString.of( "chunked" );
+	private static final AsciiString IF_NONE_MATCH = AsciiString.of( "if-none-match" );
+	private static final AsciiString IF_MODIFIED_SINCE = AsciiString.of( "if-modified-since" );
+	static final HeaderOption[] NOT_MODIFIED_EXCLUDED_HEADERS = { Header.HEADER_CONTENT_TYPE,
+			Header.HEADER_CONTENT_LENGTH, Header.HEADER_CONTENT_MD5, Header.HEADER_CONTENT_ENCODING,
+			Header.HEADER_CONTENT_DISPOSITION, Header.HEADER_CONTENT_TRANSFER_ENCODING };
+	private static final String CRLF = "\r\n";
+	private static final int FILE_CHUNK_SIZE = 8192;
 
 	private final ProtocolType protocolType;
+	private final Deque<ByteBuf> pendingMessages = new ArrayDeque<>();
 
 	private WorkerContext workerContext;
-	private RequestReader requestReader;
+	private RequestParser requestParser;
 	private boolean reused = false;
+	private boolean handling = false;
+	private boolean closing = false;
+	private KvantumReadTimeoutHandler suspendedTimeout;
+	private ChannelFuture lastWrite;
 
 	@Override public void handlerAdded(final ChannelHandlerContext context)
 	{
@@ -100,11 +143,11 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 	private void createNew(@NonNull final SocketContext socketContext)
 	{
 		this.workerContext = new WorkerContext( ServerImplementation.getImplementation(),
-				ServerImplementation.getImplementation().getProcedure().getInstance(), this );
+				ServerImplementation.getImplementation().getProcedure().getInstance() );
 		this.workerContext.setSocketContext( socketContext );
 		final Request request = new Request( socketContext );
 		this.workerContext.setRequest( request );
-		this.requestReader = new RequestReader( request );
+		this.requestParser = new RequestParser( request );
 	}
 
 	@Override public void channelActive(final ChannelHandlerContext ctx) throws Exception
@@ -126,6 +169,30 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 
 	@Override public void channelRead(final ChannelHandlerContext context, final Object messageObject)
 	{
+		//
+		// Read incoming message
+		//
+		final ByteBuf message = ( ByteBuf ) messageObject;
+
+		//
+		// If a request is currently being handled by the request worker pool, the
+		// message is held back until the response has been written
+		//
+		if ( this.handling )
+		{
+			this.pendingMessages.add( message );
+			return;
+		}
+
+		//
+		// Nothing is read after a response that closes the connection
+		//
+		if ( this.closing )
+		{
+			message.release();
+			return;
+		}
+
 		if ( reused && CoreConfig.debug )
 		{
 			Logger.debug( "Reused socket: {}", this.workerContext.getSocketContext().getIP() );
@@ -136,29 +203,44 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		//
 		this.reused = false;
 
-		//
-		// Read incoming message
-		//
-		final ByteBuf message = ( ByteBuf ) messageObject;
-
 		try
 		{
-			this.requestReader.readBytes( message );
+			this.requestParser.parse( message );
 		} catch ( final Throwable throwable )
-		{
-			this.handleThrowable( throwable, context );
-		} finally
 		{
 			message.release();
+			//
+			// The rest of a rejected request cannot be told apart from the next
+			// request, so the connection is closed once the error has been sent
+			//
+			this.workerContext.getRequest().getHeaders().put( CONNECTION, CLOSE );
+			this.handleThrowable( throwable, context );
+			return;
 		}
 
 		//
 		// Handle complete requests
 		//
-		if ( this.requestReader.isDone() )
+		if ( !this.requestParser.isDone() )
+		{
+			message.release();
+		} else
 		{
+			//
+			// Pipelined requests that were received along with this one are kept
+			// at the front of the queue, and are read once this request has been
+			// answered
+			//
+			if ( message.isReadable() )
+			{
+				this.pendingMessages.addFirst( message );
+			} else
+			{
+				message.release();
+			}
+
 			// Release content
-			this.requestReader.clear();
+			this.requestParser.clear();
 			this.workerContext.getRequest().onCompileFinish();
 
 			if ( CoreConfig.debug )
@@ -166,13 +248,95 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 				this.workerContext.getRequest().dumpRequest();
 			}
 
-			try
+			//
+			// The response is generated by the request worker pool, so that slow
+			// request handlers do not block the event loop. No more data is read
+			// from the channel until the response has been written, so the read
+			// timeout is suspended in the mean time.
+			//
+			this.handling = true;
+			context.channel().config().setAutoRead( false );
+			if ( this.suspendedTimeout == null )
 			{
-				this.handleResponse( context );
-			} catch ( final Throwable throwable )
+				this.suspendedTimeout = KvantumReadTimeoutHandler.suspend( context );
+			}
+			SimpleServer.requestWorkerPool.execute( () -> {
+				try
+				{
+					this.handleResponse( context );
+				} catch ( final Throwable throwable )
+				{
+					this.handleThrowable( throwable, context );
+				} finally
+				{
+					context.executor().execute( () -> this.resumeReading( context ) );
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Re-enable reading from the channel once the request worker is done with the current request, and replay any
+	 * messages that were received in the mean time. Responses are not flushed until there are no more complete
+	 * requests to answer, so that a batch of pipelined requests is flushed once. Must be called from the channel event
+	 * loop.
+	 *
+	 * @param context Channel context
+	 */
+	private void resumeReading(final ChannelHandlerContext context)
+	{
+		this.handling = false;
+		if ( this.closing || !context.channel().isOpen() )
+		{
+			context.flush();
+			ByteBuf pending;
+			while ( ( pending = this.pendingMessages.poll() ) != null )
 			{
-				this.handleThrowable( throwable, context );
+				pending.release();
 			}
+			return;
+		}
+		context.channel().config().setAutoRead( true );
+		ByteBuf pending;
+		while ( !this.handling && ( pending = this.pendingMessages.poll() ) != null )
+		{
+			this.channelRead( context, pending );
+		}
+		if ( !this.handling )
+		{
+			context.flush();
+			this.resumeReadTimeout( context );
+		}
+	}
+
+	/**
+	 * Restart the read timeout once the last response has been written, as writing a file or a buffered body may
+	 * take longer than the timeout itself. Must be called from the channel event loop.
+	 *
+	 * @param context Channel context
+	 */
+	private void resumeReadTimeout(final ChannelHandlerContext context)
+	{
+		if ( this.suspendedTimeout == null )
+		{
+			return;
+		}
+		if ( this.lastWrite == null || this.lastWrite.isDone() )
+		{
+			this.restartReadTimeout( context );
+		} else
+		{
+			this.lastWrite.addListener( future -> this.restartReadTimeout( context ) );
+		}
+	}
+
+	private void restartReadTimeout(final ChannelHandlerContext context)
+	{
+		// Another request may have been received while the response was written
+		if ( !this.handling && this.suspendedTimeout != null && context.channel().isOpen() )
+		{
+			KvantumReadTimeoutHandler.resume( context, this.suspendedTimeout );
+			this.suspendedTimeout = null;
 		}
 	}
 
@@ -200,15 +364,20 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		}
 	}
 
-	private void writeResponse() throws Throwable
+	/**
+	 * Generate the response to the request of a worker context, using the request handler that has been determined
+	 * by {@link #determineRequestHandler(WorkerContext)}. The body is stored in the worker context.
+	 *
+	 * @param workerContext Worker context
+	 * @throws Throwable If the response cannot be generated
+	 */
+	static void writeResponse(final WorkerContext workerContext) throws Throwable
 	{
 		//
 		// Scope variables
 		//
 		String textContent = "";
 		byte[] bytes = EMPTY;
-		boolean shouldCache = false;
-		boolean cache = false;
 		RequestHandler requestHandler = workerContext.getRequestHandler();
 		AbstractRequest request = workerContext.getRequest();
 		ResponseBody body;
@@ -225,27 +394,36 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 			}
 
 			//
-			// Try to find cached response
+			// Answer conditional requests without generating the response,
+			// if the handler is able to tell whether it has been modified
 			//
-			if ( requestHandler instanceof CacheApplicable && ( ( CacheApplicable ) requestHandler )
-					.isApplicable( request ) )
+			if ( requestHandler instanceof ValidatorProvider && isConditional( request ) )
 			{
-				cache = true;
-				if ( !ServerImplementation.getImplementation().getCacheManager().hasCache( requestHandler ) )
+				final ResponseValidator validator = ( ( ValidatorProvider ) requestHandler ).getValidator( request );
+				if ( validator != null && validator.isNotModified( request ) )
 				{
-					shouldCache = true;
+					final Response response = new Response( requestHandler );
+					response.getHeader().setStatus( Header.STATUS_NOT_MODIFIED );
+					response.getHeader().set( Header.HEADER_ETAG, validator.getEntityTag() );
+					response.getHeader().set( Header.HEADER_LAST_MODIFIED, validator.getLastModifiedTimeStamp() );
+					request.postponedCookies.forEach( response.getHeader()::setCookie );
+					workerContext.setBody( response );
+					workerContext.setBytes( response.getBytes() );
+					return;
 				}
 			}
 
 			//
-			// Make sure that cache is handled as it should
+			// Cacheable responses are served from, or stored in, the body cache
 			//
-			if ( !cache || shouldCache )
-			{ // Either it's a non-cached view, or there is no cache stored
-				body = requestHandler.handle( request );
+			if ( requestHandler instanceof CacheApplicable && ( ( CacheApplicable ) requestHandler )
+					.isApplicable( request ) )
+			{
+				body = ServerImplementation.getImplementation().getCacheManager()
+						.getCache( requestHandler, request, requestHandler::handle );
 			} else
-			{ // Just read from memory
-				body = ServerImplementation.getImplementation().getCacheManager().getCache( requestHandler );
+			{
+				body = requestHandler.handle( request );
 			}
 
 			//
@@ -268,20 +446,12 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 					{
 						Logger.debug( "Redirect is to " + redirectRequest.getQuery().getResource() );
 					}
-					this.determineRequestHandler();
-					this.writeResponse();
+					determineRequestHandler( workerContext );
+					writeResponse( workerContext );
 				}
 				return;
 			}
 
-			//
-			// Store cache
-			//
-			if ( shouldCache )
-			{
-				ServerImplementation.getImplementation().getCacheManager().setCache( requestHandler, body );
-			}
-
 			if ( body.isText() )
 			{
 				textContent = body.getContent();
@@ -317,20 +487,38 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 			{
 				if ( body.isText() )
 				{
+					boolean streamed = false;
 					if ( workerContext.getWorkerProcedureInstance().containsHandlers() )
 					{
-						for ( final WorkerProcedure.Handler<String> handler : workerContext.getWorkerProcedureInstance()
-								.getStringHandlers() )
+						final Iterator<WorkerProcedure.StringHandler> handlers = workerContext
+								.getWorkerProcedureInstance().getStringHandlers().iterator();
+						while ( handlers.hasNext() )
 						{
-							textContent = handler.act( requestHandler, request, textContent );
+							final WorkerProcedure.StringHandler handler = handlers.next();
+							//
+							// Large templates are rendered while the response is being sent, if
+							// the last handler is able to write its output incrementally
+							//
+							if ( !handlers.hasNext() && shouldStream( handler, body, textContent ) )
+							{
+								body = streamText( ( WorkerProcedure.StreamingStringHandler ) handler,
+										requestHandler, request, ( Response ) body, textContent );
+								streamed = true;
+							} else
+							{
+								textContent = handler.act( requestHandler, request, textContent );
+							}
 						}
 					}
-					//
-					// This uses UTF-8 rather than US ASCII as the
-					// HTTP protocol doesn't specify the character
-					// encoding of the entity body
-					//
-					bytes = textContent.getBytes( StandardCharsets.UTF_8 );
+					if ( !streamed )
+					{
+						//
+						// This uses UTF-8 rather than US ASCII as the
+						// HTTP protocol doesn't specify the character
+						// encoding of the entity body
+						//
+						bytes = textContent.getBytes( StandardCharsets.UTF_8 );
+					}
 				}
 			}
 		} catch ( final Exception e )
@@ -364,7 +552,55 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		workerContext.setBytes( bytes );
 	}
 
-	private void determineRequestHandler() throws Throwable
+	/**
+	 * Check whether the text content should be rendered into the response stream by the last string handler. Cached
+	 * responses are shared between requests, and are always generated as a whole
+	 *
+	 * @param handler Last string handler
+	 * @param body Response body
+	 * @param textContent Text content, as generated by the preceding handlers
+	 * @return True if the content should be streamed
+	 */
+	private static boolean shouldStream(final WorkerProcedure.StringHandler handler, final ResponseBody body,
+			final String textContent)
+	{
+		final int threshold = CoreConfig.Templates.streamThreshold;
+		return threshold >= 0 && textContent.length() >= threshold
+				&& handler instanceof WorkerProcedure.StreamingStringHandler && body instanceof Response;
+	}
+
+	/**
+	 * Create a copy of a text response, that is rendered by a handler while it is being sent. The rendered text is
+	 * encoded as UTF-8 as it is written, so neither the text nor the bytes are held in memory as a whole
+	 *
+	 * @param handler Handler rendering the content
+	 * @param requestHandler Request handler that generated the response
+	 * @param request Request that the response is generated for
+	 * @param response Text response
+	 * @param textContent Text content
+	 * @return Streamed response
+	 */
+	private static Response streamText(final WorkerProcedure.StreamingStringHandler handler,
+			final RequestHandler requestHandler, final AbstractRequest request, final Response response,
+			final String textContent)
+	{
+		final Response streamed = new Response();
+		streamed.copyFrom( response );
+		streamed.setStream( outputStream -> {
+			final Writer writer = new OutputStreamWriter( outputStream, StandardCharsets.UTF_8 );
+			handler.act( requestHandler, request, textContent, writer );
+			writer.flush();
+		} );
+		return streamed;
+	}
+
+	/**
+	 * Find the request handler that matches the request of a worker context
+	 *
+	 * @param workerContext Worker context
+	 * @throws Throwable If no request handler matches the request
+	 */
+	static void determineRequestHandler(final WorkerContext workerContext) throws Throwable
 	{
 		workerContext.setRequestHandler(
 				ServerImplementation.getImplementation().getRouter().match( workerContext.getRequest() ) );
@@ -391,15 +627,16 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 
 	private void handleResponse(final ChannelHandlerContext context) throws Throwable
 	{
-		this.determineRequestHandler();
-		this.writeResponse();
+		determineRequestHandler( this.workerContext );
+		writeResponse( this.workerContext );
 		this.sendResponse( context );
 	}
 
 	@SuppressWarnings("ALL") private void sendResponse(final ChannelHandlerContext context)
 	{
 		// Determine whether or not the responce should be compressed
-		workerContext.determineGzipStatus();
+		workerContext.determineContentEncoding();
+		final ContentEncoding contentEncoding = workerContext.getContentEncoding();
 
 		// Get the generated body
 		ResponseBody body = workerContext.getBody();
@@ -411,81 +648,203 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		Assert.notNull( body );
 		Assert.notNull( body.getHeader() );
 
-		// Retrieve an Md5Handler from the handler pool
-		final Md5Handler md5Handler = SimpleServer.md5HandlerPool.getNullable();
-		// Generate the md5 checksum
-		final String checksum = md5Handler.generateChecksum( bytes );
+		//
+		// Determine whether to keep the connection alive. Streamed bodies are sent in chunks
+		// on persistent connections, which HTTP/1.0 clients don't understand, so their end is
+		// indicated by closing the connection instead
+		//
+		final AbstractRequest request = workerContext.getRequest();
+		final boolean keepAlive = request.getHeaders().getOrDefault( CONNECTION, CLOSE ).equalsIgnoreCase( KEEP_ALIVE )
+				&& ( body.getStream() == null || !AbstractRequest.HTTP_1_0.equals( request.getHttpVersion() ) );
+
+		//
+		// Cached responses are written straight from their precompiled wire images,
+		// unless the request requires something request specific to be added
+		//
+		final PrecompiledResponse precompiledResponse = this.getPrecompiledResponse( body );
+		if ( precompiledResponse != null )
+		{
+			final ByteBuf image = precompiledResponse.getImage( contentEncoding, keepAlive );
+			if ( image != null )
+			{
+				this.finishResponse( context, image, keepAlive, body.getHeader().getStatus(),
+						precompiledResponse.getLength( contentEncoding, keepAlive ) );
+				return;
+			}
+		}
 
-		// Update the headers to include the md5 checksum
-		body.getHeader().set( Header.HEADER_CONTENT_MD5, checksum );
-		body.getHeader().set( Header.HEADER_ETAG, checksum );
+		// Files served from the file system are never read into memory
+		final Path file = body.getFile();
+		// Streamed bodies are generated while they are being sent
+		final StreamingContent stream = body.getStream();
+		final long entityLength = file == null
+				? bytes.length
+				: file.length();
 
-		// Return the md5 handler to the pool
-		SimpleServer.md5HandlerPool.add( md5Handler );
+		//
+		// Cached bodies are shared between requests, so the request specific
+		// headers are applied to a copy of their header
+		//
+		Header header = body instanceof CachedResponse
+				? body.getHeader().copy()
+				: body.getHeader();
 
-		// Add a Last-Modified if it isn't already present in the response
-		if ( !body.getHeader().get( Header.HEADER_LAST_MODIFIED ).isPresent() )
+		// Add validators, and check whether the client already has the current representation
+		boolean notModified = applyValidators( workerContext, header, bytes, file, stream );
+		long length = entityLength;
+		final List<ByteRange> ranges = notModified || stream != null
+				? null
+				: this.getRequestedRanges( body, entityLength );
+		byte[][] partHeaders = null;
+		if ( notModified )
 		{
-			body.getHeader().set( Header.HEADER_LAST_MODIFIED, TimeUtil.getHTTPTimeStamp() );
+			header.setStatus( Header.STATUS_NOT_MODIFIED );
+			for ( final HeaderOption option : NOT_MODIFIED_EXCLUDED_HEADERS )
+			{
+				header.remove( option );
+			}
+			length = 0;
+		} else if ( ranges != null )
+		{
+			header.remove( Header.HEADER_CONTENT_MD5 );
+			if ( ranges.isEmpty() )
+			{
+				header.setStatus( Header.STATUS_RANGE_NOT_SATISFIABLE );
+				header.set( Header.HEADER_CONTENT_RANGE, ByteRange.unsatisfiable( entityLength ) );
+				length = 0;
+			} else if ( ranges.size() == 1 )
+			{
+				header.setStatus( Header.STATUS_PARTIAL_CONTENT );
+				header.set( Header.HEADER_CONTENT_RANGE, ranges.get( 0 ).toContentRange( entityLength ) );
+				length = ranges.get( 0 ).length();
+			} else
+			{
+				//
+				// Every range is sent as a separate part of a multipart/byteranges body,
+				// with the delimiter, content type and range preceding the content
+				//
+				final String boundary = Long.toHexString( ThreadLocalRandom.current().nextLong() );
+				final Optional<AsciiString> contentType = header.get( Header.HEADER_CONTENT_TYPE );
+				header.setStatus( Header.STATUS_PARTIAL_CONTENT );
+				header.set( Header.HEADER_CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary );
+				partHeaders = new byte[ ranges.size() + 1 ][];
+				length = 0;
+				for ( int i = 0; i < ranges.size(); i++ )
+				{
+					final StringBuilder partHeader = new StringBuilder( CRLF ).append( "--" ).append( boundary )
+							.append( CRLF );
+					contentType.ifPresent(
+							type -> partHeader.append( "Content-Type: " ).append( type ).append( CRLF ) );
+					partHeader.append( "Content-Range: " ).append( ranges.get( i ).toContentRange( entityLength ) )
+							.append( CRLF ).append( CRLF );
+					partHeaders[ i ] = partHeader.toString().getBytes( StandardCharsets.US_ASCII );
+					length += partHeaders[ i ].length + ranges.get( i ).length();
+				}
+				partHeaders[ ranges.size() ] = ( CRLF + "--" + boundary + "--" + CRLF )
+						.getBytes( StandardCharsets.US_ASCII );
+				length += partHeaders[ ranges.size() ].length;
+			}
+			header.set( Header.HEADER_CONTENT_LENGTH, String.valueOf( length ) );
 		}
 
-		// If gzip compression is supported, compress the response
-		if ( workerContext.isGzip() )
+		// If compression is supported, compress the response
+		ByteBuf encodedContent = null;
+		if ( contentEncoding != null && stream != null && !notModified )
+		{
+			// Streams are compressed while they are being written
+			header.set( Header.HEADER_CONTENT_ENCODING, contentEncoding.getName() );
+		} else if ( contentEncoding != null && ranges == null && !notModified )
 		{
 			try
 			{
-				final GzipHandler gzipHandler = SimpleServer.gzipHandlerPool.getNullable();
-				bytes = gzipHandler.compress( bytes );
-				if ( body.getHeader().hasHeader( Header.HEADER_CONTENT_LENGTH ) )
+				if ( file == null )
 				{
-					body.getHeader().set( Header.HEADER_CONTENT_LENGTH, "" + bytes.length );
+					bytes = encode( bytes, contentEncoding, body instanceof CachedResponse );
+					length = bytes.length;
+				} else
+				{
+					// Small files are compressed once, and written from the off-heap content cache
+					encodedContent = getCachedContent( file, contentEncoding );
+					if ( encodedContent != null )
+					{
+						length = encodedContent.readableBytes();
+					}
+				}
+				if ( file == null || encodedContent != null )
+				{
+					header.set( Header.HEADER_CONTENT_ENCODING, contentEncoding.getName() );
+					if ( header.hasHeader( Header.HEADER_CONTENT_LENGTH ) )
+					{
+						header.set( Header.HEADER_CONTENT_LENGTH, "" + length );
+					}
 				}
-				SimpleServer.gzipHandlerPool.add( gzipHandler );
 			} catch ( final IOException e )
 			{
-				new KvantumException( "( GZIP ) Failed to compress the bytes" ).printStackTrace();
+				new KvantumException( "( " + contentEncoding + " ) Failed to compress the bytes" ).printStackTrace();
 			}
 		}
 
+		// Let caches know that the body depends on the accepted encodings
+		if ( workerContext.isCompressible() && !header.getMultiple( Header.HEADER_VARY ).contains( ACCEPT_ENCODING ) )
+		{
+			header.set( Header.HEADER_VARY, ACCEPT_ENCODING, true );
+		}
+
 		// Output debug messages
 		if ( CoreConfig.debug )
 		{
 			DebugTree.builder().name( "Response Information" )
 					.entry( "Address", workerContext.getSocketContext().getAddress() )
-					.entry( "Headers", body.getHeader().getHeaders() ).build().collect().forEach( Logger::debug );
+					.entry( "Headers", header.getHeaders() ).build().collect().forEach( Logger::debug );
 		}
 
-		// Determine whether to keep the connection alive
-		final boolean keepAlive;
-		if ( workerContext.getRequest().getHeaders().getOrDefault( CONNECTION, CLOSE ).equalsIgnoreCase( KEEP_ALIVE ) )
+		if ( keepAlive )
 		{
 			if ( CoreConfig.debug )
 			{
 				Logger.debug( "Request " + workerContext.getRequest() + " requested keep-alive..." );
 			}
-			keepAlive = true;
 			//
 			// Apply "connection: keep-alive" and "content-length: n" headers to
 			// make sure that the client keeps the connection open
 			//
-			body.getHeader().set( Header.HEADER_CONNECTION, KEEP_ALIVE );
-			body.getHeader().set( Header.HEADER_CONTENT_LENGTH, String.valueOf( bytes.length ) );
+			header.set( Header.HEADER_CONNECTION, KEEP_ALIVE );
+			if ( stream != null )
+			{
+				// The length of streamed bodies is unknown, so they are sent in chunks
+				header.remove( Header.HEADER_CONTENT_LENGTH );
+				header.set( Header.HEADER_TRANSFER_ENCODING, CHUNKED );
+			} else if ( !notModified )
+			{
+				header.set( Header.HEADER_CONTENT_LENGTH, String.valueOf( length ) );
+			}
 		} else
 		{
-			keepAlive = false;
-			body.getHeader().set( Header.HEADER_CONNECTION, CLOSE );
+			header.set( Header.HEADER_CONNECTION, CLOSE );
+			if ( stream != null )
+			{
+				// The end of streamed bodies is indicated by closing the connection
+				header.remove( Header.HEADER_CONTENT_LENGTH );
+			}
 		}
 
-		// Alocate a byte buffer
-		// TODO: Make sure that we can fit the entire response in the buffer
-		final ByteBuf buf = context.alloc().buffer( CoreConfig.Buffer.out );
+		//
+		// Allocate a pooled buffer that fits the serialized header exactly, along with the
+		// body when it is held in memory. Files and streams are written separately, so they
+		// don't need any room in this buffer
+		//
+		final Collection<Map.Entry<HeaderOption, AsciiString>> entries = header.entries();
+		final int bodyLength = notModified || file != null || stream != null
+				? 0
+				: ( int ) length;
+		final ByteBuf buf = context.alloc().ioBuffer( getSerializedLength( header, entries ) + bodyLength );
 
 		// Write the header
-		buf.writeBytes( body.getHeader().getFormat().getValue() );
+		buf.writeBytes( header.getFormat().getValue() );
 		buf.writeBytes( SPACE );
-		buf.writeBytes( body.getHeader().getStatus().getValue() );
+		buf.writeBytes( header.getStatus().getValue() );
 		buf.writeBytes( NEW_LINE );
-		for ( final Map.Entry<HeaderOption, AsciiString> entry : body.getHeader().getHeaders().entries() )
+		for ( final Map.Entry<HeaderOption, AsciiString> entry : entries )
 		{
 			buf.writeBytes( entry.getKey().getBytes() );
 			buf.writeBytes( COLON_SPACE );
@@ -497,11 +856,175 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		buf.writeBytes( NEW_LINE );
 
 		// Write body
-		buf.writeBytes( bytes );
+		final ByteBuf remaining;
+		try
+		{
+			if ( encodedContent != null )
+			{
+				remaining = this.writeContent( context, buf, encodedContent );
+			} else if ( notModified )
+			{
+				remaining = buf;
+			} else if ( stream != null )
+			{
+				remaining = Unpooled.EMPTY_BUFFER;
+				length = this.writeStream( context, buf, stream, contentEncoding, keepAlive );
+			} else
+			{
+				remaining = this.writeBody( context, buf, bytes, file, ranges, partHeaders );
+			}
+		} catch ( final IOException e )
+		{
+			new KvantumException( "Failed to write the response body", e ).printStackTrace();
+			context.close();
+			return;
+		}
 
-		// Invalidate request to make sure that it isn't handled anywhere else, again (wouldn't work)
-		workerContext.getRequest().setValid( false );
+		// Store the wire image, so that it can be written as is the next time
+		if ( precompiledResponse != null )
+		{
+			precompiledResponse.setImage( contentEncoding, keepAlive, remaining, ( int ) length );
+		}
+
+		this.finishResponse( context, remaining, keepAlive, header.getStatus(), ( int ) length );
+	}
+
+	/**
+	 * Compute the amount of bytes that a header occupies on the wire, including the status line
+	 * and the empty line that terminates it
+	 *
+	 * @param header Response header
+	 * @param entries Header pairs
+	 * @return Serialized length
+	 */
+	private static int getSerializedLength(final Header header,
+			final Collection<Map.Entry<HeaderOption, AsciiString>> entries)
+	{
+		int length = header.getFormat().getValue().length + SPACE.length + header.getStatus().getValue().length
+				+ NEW_LINE.length * 2;
+		for ( final Map.Entry<HeaderOption, AsciiString> entry : entries )
+		{
+			length += entry.getKey().getBytes().length + COLON_SPACE.length + entry.getValue().getValue().length
+					+ NEW_LINE.length;
+		}
+		return length;
+	}
+
+	/**
+	 * Compress a body. Bodies that are shared between requests, such as cached responses, are only compressed once,
+	 * after which the compressed variant is stored alongside the body by the cache manager
+	 *
+	 * @param bytes Body
+	 * @param contentEncoding Content coding
+	 * @param shared Whether or not the body may be shared between requests
+	 * @return Compressed body
+	 * @throws IOException If the compression fails
+	 */
+	static byte[] encode(final byte[] bytes, final ContentEncoding contentEncoding, final boolean shared)
+			throws IOException
+	{
+		final ICacheManager cacheManager = ServerImplementation.getImplementation().getCacheManager();
+		final Map<ContentEncoding, byte[]> variants = shared && cacheManager instanceof CacheManager
+				? ( ( CacheManager ) cacheManager ).getEncodedVariants( bytes )
+				: null;
+		if ( variants != null )
+		{
+			final byte[] variant = variants.get( contentEncoding );
+			if ( variant != null )
+			{
+				return variant;
+			}
+		}
+		final byte[] encoded;
+		if ( contentEncoding == ContentEncoding.GZIP )
+		{
+			final GzipHandler gzipHandler = SimpleServer.gzipHandlerPool.getNullable();
+			try
+			{
+				encoded = gzipHandler.compress( bytes );
+			} finally
+			{
+				SimpleServer.gzipHandlerPool.add( gzipHandler );
+			}
+		} else
+		{
+			encoded = DeflateHandler.compress( bytes );
+		}
+		if ( variants != null )
+		{
+			variants.put( contentEncoding, encoded );
+		}
+		return encoded;
+	}
+
+	/**
+	 * Add an entity tag and a last modification date to a response, unless it already carries them, and check whether
+	 * the response answers a conditional request that can be answered with 304 Not Modified instead. Cached responses
+	 * are given their validators when they are cached, as their header is shared between requests
+	 *
+	 * @param workerContext Worker context
+	 * @param header Response header, which must not be shared with other requests
+	 * @param bytes Body bytes, if the body is held in memory
+	 * @param file Body file, if the body is served from the file system
+	 * @param stream Streamed content, if the body is streamed
+	 * @return True if the response should be sent as 304 Not Modified
+	 */
+	static boolean applyValidators(final WorkerContext workerContext, final Header header, final byte[] bytes,
+			@Nullable final Path file, @Nullable final StreamingContent stream)
+	{
+		// Responses that have already been validated before being generated carry no body
+		final boolean notModified = header.getStatus().equals( Header.STATUS_NOT_MODIFIED );
+
+		//
+		// Responses that already carry an entity tag, such as static files and
+		// cached bodies, are not hashed again
+		//
+		if ( !notModified && stream == null && !header.hasHeader( Header.HEADER_ETAG ) )
+		{
+			if ( file == null )
+			{
+				// Update the headers to include the md5 checksum
+				final String checksum = Md5Handler.checksum( bytes );
+				header.set( Header.HEADER_CONTENT_MD5, checksum );
+				header.set( Header.HEADER_ETAG, checksum );
+			} else
+			{
+				// Hashing the file would require reading it, so the tag is derived from the size and modification time
+				header.set( Header.HEADER_ETAG, ResponseValidator.of( file ).getEntityTag() );
+			}
+		}
+
+		// Add a Last-Modified if it isn't already present in the response
+		final Optional<AsciiString> lastModified = header.get( Header.HEADER_LAST_MODIFIED );
+		if ( !lastModified.isPresent() )
+		{
+			header.set( Header.HEADER_LAST_MODIFIED, TimeUtil.getHTTPTimeStamp() );
+		}
+
+		//
+		// Answer conditional requests for generated responses, now that their validators are known.
+		// A Last-Modified generated above describes the time of sending, and is thus not used.
+		//
+		if ( !notModified && header.getStatus().equals( Header.STATUS_OK ) && isConditional(
+				workerContext.getRequest() ) )
+		{
+			return ResponseValidator.isNotModified( workerContext.getRequest(),
+					header.get( Header.HEADER_ETAG ).map( AsciiString::toString ).orElse( null ),
+					lastModified.map( TimeUtil::parseHTTPTimeStamp ).orElse( -1L ) );
+		}
+		return notModified;
+	}
 
+	/**
+	 * Let the event bus know that a response has been sent (used for logging). The event is published on the event
+	 * publisher pool, if there is one, so that subscribers don't delay the response
+	 *
+	 * @param workerContext Worker context
+	 * @param status Response status
+	 * @param length Body length
+	 */
+	static void emitFinalizedResponse(final WorkerContext workerContext, final AsciiString status, final int length)
+	{
 		// Intialize a finalized response builder (used for logging)
 		final FinalizedResponse.FinalizedResponseBuilder finalizedResponse = FinalizedResponse.builder();
 
@@ -509,29 +1032,320 @@ import xyz.kvantum.server.implementation.error.KvantumException;
 		// in production mode. This is is to ensure GDPR compliance
 		if ( CoreConfig.debug )
 		{
-			finalizedResponse.address( this.workerContext.getSocketContext().getIP() );
+			finalizedResponse.address( workerContext.getSocketContext().getIP() );
 		} else
 		{
 			finalizedResponse.address( "external" );
 		}
-		finalizedResponse.authorization( this.workerContext.getRequest().getAuthorization().orElse( null ) )
-				.length( bytes.length ).status( body.getHeader().getStatus().toString() )
-				.query( this.workerContext.getRequest().getQuery() ).timeFinished( System.currentTimeMillis() ).build();
-		ServerImplementation.getImplementation().getEventBus().emit( finalizedResponse );
+		finalizedResponse.authorization( workerContext.getRequest().getAuthorization().orElse( null ) )
+				.length( length ).status( status.toString() )
+				.query( workerContext.getRequest().getQuery() ).timeFinished( System.currentTimeMillis() );
+		final FinalizedResponse response = finalizedResponse.build();
+		if ( SimpleServer.eventPublisherPool != null )
+		{
+			SimpleServer.eventPublisherPool
+					.execute( () -> ServerImplementation.getImplementation().getEventBus().emit( response ) );
+		} else
+		{
+			ServerImplementation.getImplementation().getEventBus().emit( response );
+		}
+	}
 
-		// Make sure everything is written
-		final ChannelFuture future = context.writeAndFlush( buf );
+	/**
+	 * Write the remainder of a response, and prepare the connection for the next request if it is to be kept alive
+	 *
+	 * @param context Channel context
+	 * @param remaining The last part of the response
+	 * @param keepAlive Whether or not the connection should be kept alive
+	 * @param status Response status
+	 * @param length Body length
+	 */
+	private void finishResponse(final ChannelHandlerContext context, final ByteBuf remaining, final boolean keepAlive,
+			final AsciiString status, final int length)
+	{
+		// Invalidate request to make sure that it isn't handled anywhere else, again (wouldn't work)
+		workerContext.getRequest().setValid( false );
+
+		emitFinalizedResponse( this.workerContext, status, length );
+
+		//
+		// Responses generated by the request worker pool are flushed once the
+		// channel has resumed reading, which allows responses to pipelined requests
+		// to be flushed together
+		//
+		final ChannelFuture future = this.handling
+				? context.write( remaining )
+				: context.writeAndFlush( remaining );
+		this.lastWrite = future;
 		if ( keepAlive )
 		{
 			this.reused = true;
-			this.requestReader.clear();
+			this.requestParser.clear();
 			this.createNew( workerContext.getSocketContext() );
 		} else
 		{
+			this.closing = true;
 			future.addListener( ChannelFutureListener.CLOSE );
 		}
 	}
 
+	/**
+	 * Get the precompiled wire images of a cached response, if the current request can be answered using them
+	 *
+	 * @param body Response body
+	 * @return Precompiled response, or null if the response has to be written from scratch
+	 */
+	@Nullable private PrecompiledResponse getPrecompiledResponse(final ResponseBody body)
+	{
+		final AbstractRequest request = workerContext.getRequest();
+		if ( !( body instanceof CachedResponse ) || !request.postponedCookies.isEmpty() || !request.getQuery()
+				.getMethod().hasBody() || isConditional( request ) || !request.getHeader( RANGE ).isEmpty() )
+		{
+			return null;
+		}
+		final ICacheManager cacheManager = ServerImplementation.getImplementation().getCacheManager();
+		if ( !( cacheManager instanceof CacheManager ) )
+		{
+			return null;
+		}
+		return ( ( CacheManager ) cacheManager ).getPrecompiledResponse( ( CachedResponse ) body );
+	}
+
+	/**
+	 * Get the content of a file from the off-heap content cache, if the file is small enough to be cached
+	 *
+	 * @param file File
+	 * @param contentEncoding Content coding to compress the content with, or null
+	 * @return Content that has to be released by the caller, or null
+	 * @throws IOException If the file cannot be read or compressed
+	 */
+	@Nullable static ByteBuf getCachedContent(final Path file, @Nullable final ContentEncoding contentEncoding)
+			throws IOException
+	{
+		final ICacheManager cacheManager = ServerImplementation.getImplementation().getCacheManager();
+		if ( !( cacheManager instanceof CacheManager ) )
+		{
+			return null;
+		}
+		return ( ( CacheManager ) cacheManager ).getFileContent( file, contentEncoding );
+	}
+
+	/**
+	 * Check whether a request is a conditional GET or HEAD request, which may be answered with 304 Not Modified
+	 *
+	 * @param request Request
+	 * @return True if the request is conditional
+	 */
+	static boolean isConditional(final AbstractRequest request)
+	{
+		final HttpMethod method = request.getQuery().getMethod();
+		return ( method == HttpMethod.GET || method == HttpMethod.HEAD ) && ( !request.getHeader( IF_NONE_MATCH )
+				.isEmpty() || !request.getHeader( IF_MODIFIED_SINCE ).isEmpty() );
+	}
+
+	/**
+	 * Get the byte ranges requested by the client, if the response supports them
+	 *
+	 * @param body Response body
+	 * @param entityLength Length of the complete response body
+	 * @return The requested ranges, an empty list if none of them can be satisfied, or null if the complete body
+	 * should be sent
+	 */
+	@Nullable private List<ByteRange> getRequestedRanges(final ResponseBody body, final long entityLength)
+	{
+		final AbstractRequest request = workerContext.getRequest();
+		if ( request.getQuery().getMethod() != HttpMethod.GET || !body.getHeader().getStatus()
+				.equals( Header.STATUS_OK ) )
+		{
+			return null;
+		}
+		final Optional<AsciiString> acceptRanges = body.getHeader().get( Header.HEADER_ACCEPT_RANGES );
+		if ( !acceptRanges.isPresent() || !acceptRanges.get().equalsIgnoreCase( BYTES ) )
+		{
+			return null;
+		}
+		final AsciiString range = request.getHeader( RANGE );
+		if ( range.isEmpty() )
+		{
+			return null;
+		}
+		//
+		// If-Range makes the range request conditional, the complete
+		// entity is sent if the validator doesn't match the current one
+		//
+		final AsciiString ifRange = request.getHeader( IF_RANGE );
+		if ( !ifRange.isEmpty() && !ifRange
+				.equals( body.getHeader().get( Header.HEADER_ETAG ).orElse( AsciiString.empty ) ) && !ifRange
+				.equals( body.getHeader().get( Header.HEADER_LAST_MODIFIED ).orElse( AsciiString.empty ) ) )
+		{
+			return null;
+		}
+		return ByteRange.parse( range.toString(), entityLength );
+	}
+
+	/**
+	 * Write the response body following the header. In-memory bodies are written to the supplied buffer, whereas file
+	 * bodies are passed to the channel directly
+	 *
+	 * @return The buffer that should be written last
+	 */
+	private ByteBuf writeBody(final ChannelHandlerContext context, final ByteBuf buf, final byte[] bytes,
+			@Nullable final Path file, @Nullable final List<ByteRange> ranges, @Nullable final byte[][] partHeaders)
+			throws IOException
+	{
+		if ( file != null && !workerContext.getRequest().getQuery().getMethod().hasBody() )
+		{
+			return buf;
+		}
+		if ( ranges == null )
+		{
+			return this.writeSegment( context, buf, bytes, file, 0, file == null
+					? bytes.length
+					: file.length() );
+		}
+		if ( partHeaders == null )
+		{
+			return ranges.isEmpty()
+					? buf
+					: this.writeSegment( context, buf, bytes, file, ranges.get( 0 ).getStart(),
+							ranges.get( 0 ).length() );
+		}
+		ByteBuf current = buf;
+		for ( int i = 0; i < ranges.size(); i++ )
+		{
+			current.writeBytes( partHeaders[ i ] );
+			current = this.writeSegment( context, current, bytes, file, ranges.get( i ).getStart(),
+					ranges.get( i ).length() );
+		}
+		current.writeBytes( partHeaders[ ranges.size() ] );
+		return current;
+	}
+
+	/**
+	 * Send the response header, and then write a streamed body to the client while it is being generated
+	 *
+	 * @param context Channel context
+	 * @param header Serialized response header
+	 * @param stream Streamed content
+	 * @param contentEncoding Content coding to compress the body with, or null
+	 * @param keepAlive Whether or not the connection will be kept alive, in which case chunked encoding is used
+	 * @return The amount of bytes that the content consisted of
+	 * @throws IOException If the content could not be written
+	 */
+	private long writeStream(final ChannelHandlerContext context, final ByteBuf header, final StreamingContent stream,
+			@Nullable final ContentEncoding contentEncoding, final boolean keepAlive) throws IOException
+	{
+		// Send the header right away, so that the client can start processing the response
+		context.writeAndFlush( header );
+		if ( !workerContext.getRequest().getQuery().getMethod().hasBody() )
+		{
+			return 0;
+		}
+		final ChunkedResponseStream chunkedStream = new ChunkedResponseStream( context, keepAlive,
+				CoreConfig.Buffer.streamChunkSize );
+		final OutputStream outputStream;
+		if ( contentEncoding == ContentEncoding.GZIP )
+		{
+			outputStream = new GZIPOutputStream( chunkedStream, CoreConfig.Buffer.streamChunkSize, true );
+		} else if ( contentEncoding == ContentEncoding.DEFLATE )
+		{
+			outputStream = new DeflaterOutputStream( chunkedStream, true );
+		} else
+		{
+			outputStream = chunkedStream;
+		}
+		try ( final OutputStream closeable = outputStream )
+		{
+			stream.writeTo( closeable );
+		} catch ( final IOException e )
+		{
+			throw e;
+		} catch ( final Exception e )
+		{
+			throw new IOException( "Failed to generate the streamed content", e );
+		}
+		return chunkedStream.getWritten();
+	}
+
+	/**
+	 * Write content that is held in a buffer of its own following the header, unless the request doesn't expect a
+	 * body, in which case the content is released
+	 *
+	 * @param context Channel context
+	 * @param buf Serialized header
+	 * @param content Content, which is released once it has been written
+	 * @return The buffer that should be written last
+	 */
+	private ByteBuf writeContent(final ChannelHandlerContext context, final ByteBuf buf, final ByteBuf content)
+	{
+		if ( !workerContext.getRequest().getQuery().getMethod().hasBody() )
+		{
+			content.release();
+			return buf;
+		}
+		context.write( buf );
+		return content;
+	}
+
+	/**
+	 * Write a segment of the body. Plain connections use zero-copy file regions, whereas encrypted connections stream
+	 * the file in chunks, as the content has to pass through the SSL handler
+	 *
+	 * @return The buffer that subsequent content should be written to
+	 */
+	private ByteBuf writeSegment(final ChannelHandlerContext context, final ByteBuf buf, final byte[] bytes,
+			@Nullable final Path file, final long offset, final long length) throws IOException
+	{
+		if ( file == null )
+		{
+			buf.writeBytes( bytes, ( int ) offset, ( int ) length );
+			return buf;
+		}
+		Object content;
+		try
+		{
+			//
+			// Small files are written from the off-heap content cache
+			//
+			final ByteBuf cached = getCachedContent( file, null );
+			if ( cached != null && cached.readableBytes() >= offset + length )
+			{
+				content = cached.slice( cached.readerIndex() + ( int ) offset, ( int ) length );
+			} else
+			{
+				if ( cached != null )
+				{
+					cached.release();
+				}
+				content = this.protocolType == ProtocolType.HTTPS
+						? new ChunkedNioFile( FileChannel.open( file.getJavaPath(), StandardOpenOption.READ ), offset,
+						length, FILE_CHUNK_SIZE )
+						: new DefaultFileRegion( file.getJavaPath().toFile(), offset, length );
+			}
+		} catch ( final IOException e )
+		{
+			buf.release();
+			throw e;
+		}
+		context.write( buf );
+		context.write( content );
+		return context.alloc().ioBuffer();
+	}
+
+	@Override public void channelInactive(final ChannelHandlerContext context) throws Exception
+	{
+		if ( !this.handling )
+		{
+			this.requestParser.clear();
+			ByteBuf pending;
+			while ( ( pending = this.pendingMessages.poll() ) != null )
+			{
+				pending.release();
+			}
+		}
+		super.channelInactive( context );
+	}
+
 	@Override public void exceptionCaught(final ChannelHandlerContext context, final Throwable cause)
 	{
 		if ( cause instanceof ReadTimeoutException )
@@ -47,6 +47,24 @@ final class Md5Handler
 		digest = temporary;
 	}
 
+	/**
+	 * MD5-ify the input, using a handler from the handler pool
+	 *
+	 * @param input Input to be digested
+	 * @return md5-ified digested text
+	 */
+	static String checksum(final byte[] input)
+	{
+		final Md5Handler md5Handler = SimpleServer.md5HandlerPool.getNullable();
+		try
+		{
+			return md5Handler.generateChecksum( input );
+		} finally
+		{
+			SimpleServer.md5HandlerPool.add( md5Handler );
+		}
+	}
+
 	/**
 	 * MD5-ify the input
 	 *
@@ -0,0 +1,217 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.response.ContentEncoding;
+
+/**
+ * Cache that stores content in direct memory, bounded by the total amount of bytes rather than the amount of entries.
+ * It holds the content of small files, their compressed variants and the wire images of cached responses. Content is
+ * handed out as retained duplicates that can be written straight to a channel, and entries are released once they are
+ * evicted, which only frees the memory once all duplicates have been written.
+ */
+final class OffHeapContentCache
+{
+
+	private final Cache<String, ByteBuf> entries;
+	private final int maxFileSize;
+
+	/**
+	 * @param maxBytes Total amount of bytes that may be stored
+	 * @param maxFileSize Files of at least this size are not stored
+	 * @param expiry Amount of seconds that an entry is kept after it was last accessed
+	 */
+	OffHeapContentCache(final long maxBytes, final int maxFileSize, final int expiry)
+	{
+		this.maxFileSize = maxFileSize;
+		this.entries = Caffeine.newBuilder().expireAfterAccess( expiry, TimeUnit.SECONDS ).maximumWeight( maxBytes )
+				.<String, ByteBuf>weigher( (key, value) -> value.capacity() )
+				.removalListener( (key, value, cause) -> value.release() ).build();
+	}
+
+	/**
+	 * Get the content of a file, reading it into the cache if it isn't stored yet. Files that are not smaller than the
+	 * maximum file size are not cached. The entry is bound to the size and modification time of the file, so that
+	 * modified files are read again.
+	 *
+	 * @param file File
+	 * @return Retained duplicate of the content, which has to be released by the caller, or null if the file is too
+	 * large to be cached
+	 * @throws IOException If the file cannot be read
+	 */
+	@Nullable ByteBuf getFileContent(@NonNull final Path file) throws IOException
+	{
+		final String key = getFileKey( file );
+		if ( key == null )
+		{
+			return null; // Nullable
+		}
+		final ByteBuf cached = this.get( key );
+		if ( cached != null )
+		{
+			return cached;
+		}
+		final int length = ( int ) file.length();
+		final ByteBuf content = Unpooled.directBuffer( length, length );
+		try ( final FileChannel channel = FileChannel.open( file.getJavaPath(), StandardOpenOption.READ ) )
+		{
+			while ( content.isWritable() )
+			{
+				if ( content.writeBytes( channel, content.writerIndex(), content.writableBytes() ) < 0 )
+				{
+					throw new IOException( "Unexpected end of file: " + file );
+				}
+			}
+		} catch ( final IOException e )
+		{
+			content.release();
+			throw e;
+		}
+		return this.put( key, content );
+	}
+
+	/**
+	 * Get the encoded (compressed) content of a file, encoding it if it isn't stored yet. The variant is bound to the
+	 * same file version as the content it was encoded from
+	 *
+	 * @param file File
+	 * @param contentEncoding Content coding
+	 * @param encoder Function that encodes the file content
+	 * @return Retained duplicate of the encoded content, which has to be released by the caller, or null if the file
+	 * is too large to be cached
+	 * @throws IOException If the file cannot be read or encoded
+	 */
+	@Nullable ByteBuf getEncodedFileContent(@NonNull final Path file, @NonNull final ContentEncoding contentEncoding,
+			@NonNull final Encoder encoder) throws IOException
+	{
+		final String fileKey = getFileKey( file );
+		if ( fileKey == null )
+		{
+			return null; // Nullable
+		}
+		final String key = fileKey + '\n' + contentEncoding.getName();
+		final ByteBuf cached = this.get( key );
+		if ( cached != null )
+		{
+			return cached;
+		}
+		final ByteBuf content = this.getFileContent( file );
+		if ( content == null )
+		{
+			return null; // Nullable
+		}
+		final byte[] encoded;
+		try
+		{
+			encoded = encoder.encode( ByteBufUtil.getBytes( content ) );
+		} finally
+		{
+			content.release();
+		}
+		final ByteBuf buffer = Unpooled.directBuffer( encoded.length, encoded.length );
+		buffer.writeBytes( encoded );
+		return this.put( key, buffer );
+	}
+
+	/**
+	 * Get a stored entry
+	 *
+	 * @param key Entry key
+	 * @return Retained duplicate of the entry, which has to be released by the caller, or null if it isn't stored
+	 */
+	@Nullable ByteBuf get(@NonNull final String key)
+	{
+		final ByteBuf cached = this.entries.getIfPresent( key );
+		if ( cached != null )
+		{
+			try
+			{
+				return cached.retainedDuplicate();
+			} catch ( final IllegalReferenceCountException e )
+			{
+				//
+				// The entry was evicted and released after it was looked up,
+				// in which case it's treated as missing
+				//
+			}
+		}
+		return null; // Nullable
+	}
+
+	/**
+	 * Store an entry, replacing any previous entry with the same key. The cache takes ownership of the buffer
+	 *
+	 * @param key Entry key
+	 * @param content Content, which is released by the cache once the entry is evicted
+	 * @return Retained duplicate of the content, which has to be released by the caller
+	 */
+	ByteBuf put(@NonNull final String key, @NonNull final ByteBuf content)
+	{
+		final ByteBuf duplicate = content.retainedDuplicate();
+		this.entries.put( key, content );
+		return duplicate;
+	}
+
+	/**
+	 * Remove an entry, if it is stored
+	 *
+	 * @param key Entry key
+	 */
+	void invalidate(@NonNull final String key)
+	{
+		this.entries.invalidate( key );
+	}
+
+	@Nullable private String getFileKey(final Path file)
+	{
+		final long length = file.length();
+		if ( length >= this.maxFileSize )
+		{
+			return null; // Nullable
+		}
+		return file.toString() + '\n' + length + '\n' + file.getLastModified();
+	}
+
+	/**
+	 * Function that encodes content
+	 */
+	@FunctionalInterface interface Encoder
+	{
+
+		byte[] encode(byte[] content) throws IOException;
+
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import xyz.kvantum.server.api.response.ContentEncoding;
+
+/**
+ * Ready-to-write wire images of a cached response, consisting of the status line, the headers and the (possibly
+ * compressed) body. The connection and content encoding headers depend on the request, so there is one image for each
+ * combination of these. The images are kept in the off-heap content cache, which may evict them at any time, and have
+ * to be released once the cached response is discarded.
+ */
+final class PrecompiledResponse
+{
+
+	private static final int IMAGES = ( ContentEncoding.values().length + 1 ) * 2;
+	private static final AtomicLong COUNTER = new AtomicLong();
+
+	private final OffHeapContentCache contentCache;
+	private final String key = "\n" + COUNTER.incrementAndGet() + '\n';
+	private final int[] lengths = new int[ IMAGES ];
+	private boolean released;
+
+	/**
+	 * @param contentCache Cache that the images are stored in
+	 */
+	PrecompiledResponse(@NonNull final OffHeapContentCache contentCache)
+	{
+		this.contentCache = contentCache;
+	}
+
+	private static int index(@Nullable final ContentEncoding encoding, final boolean keepAlive)
+	{
+		final int encodingIndex = encoding == null
+				? 0
+				: encoding.ordinal() + 1;
+		return encodingIndex * 2 + ( keepAlive
+				? 1
+				: 0 );
+	}
+
+	/**
+	 * Get an image that can be written to a channel. The returned buffer is a retained duplicate, which will be
+	 * released once it has been written.
+	 *
+	 * @param encoding Content coding of the body, or null if it isn't compressed
+	 * @param keepAlive Whether or not the connection is kept alive
+	 * @return Image, or null if no such image is stored
+	 */
+	@Nullable synchronized ByteBuf getImage(@Nullable final ContentEncoding encoding, final boolean keepAlive)
+	{
+		return this.contentCache.get( this.key + index( encoding, keepAlive ) );
+	}
+
+	/**
+	 * Get the length of the body contained in an image
+	 *
+	 * @param encoding Content coding of the body, or null if it isn't compressed
+	 * @param keepAlive Whether or not the connection is kept alive
+	 * @return Body length
+	 */
+	synchronized int getLength(@Nullable final ContentEncoding encoding, final boolean keepAlive)
+	{
+		return this.lengths[ index( encoding, keepAlive ) ];
+	}
+
+	/**
+	 * Store a copy of the readable bytes of a fully serialized response
+	 *
+	 * @param encoding Content coding of the body, or null if it isn't compressed
+	 * @param keepAlive Whether or not the connection is kept alive
+	 * @param response Serialized response, which is left untouched
+	 * @param length Body length
+	 */
+	synchronized void setImage(@Nullable final ContentEncoding encoding, final boolean keepAlive,
+			final ByteBuf response, final int length)
+	{
+		if ( this.released )
+		{
+			return;
+		}
+		final int index = index( encoding, keepAlive );
+		final ByteBuf image = Unpooled.directBuffer( response.readableBytes() );
+		image.writeBytes( response, response.readerIndex(), response.readableBytes() );
+		this.contentCache.put( this.key + index, image ).release();
+		this.lengths[ index ] = length;
+	}
+
+	/**
+	 * Release all stored images. Images that are being written are released once they have been written
+	 */
+	synchronized void release()
+	{
+		this.released = true;
+		for ( int i = 0; i < IMAGES; i++ )
+		{
+			this.contentCache.invalidate( this.key + i );
+		}
+	}
+
+}
@@ -0,0 +1,550 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.nio.charset.StandardCharsets;
+import xyz.kvantum.server.api.config.CoreConfig;
+import xyz.kvantum.server.api.logging.Logger;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.request.RequestCompiler;
+import xyz.kvantum.server.api.request.post.DummyPostRequest;
+import xyz.kvantum.server.api.request.post.EntityType;
+import xyz.kvantum.server.api.request.post.JsonPostRequest;
+import xyz.kvantum.server.api.request.post.MultipartPostRequest;
+import xyz.kvantum.server.api.request.post.UrlEncodedPostRequest;
+import xyz.kvantum.server.api.response.Header;
+import xyz.kvantum.server.api.util.AsciiString;
+
+/**
+ * Incremental HTTP request parser. The request line, headers and body are read straight from the inbound buffers,
+ * and the parser keeps track of how far it got, so that a request may be split across any number of messages. Only
+ * lines that are split between two messages are copied into an intermediate buffer. The parser uses {@link
+ * java.nio.charset.StandardCharsets#US_ASCII} as the charset, as defined by the HTTP protocol.
+ */
+final class RequestParser
+{
+
+	private static final AsciiString CONTENT_TYPE = AsciiString.of( "content-type" );
+	private static final AsciiString CONTENT_LENGTH = AsciiString.of( "content-length" );
+	private static final AsciiString TRANSFER_ENCODING = AsciiString.of( "transfer-encoding" );
+	private static final String CHUNKED = "chunked";
+	private static final String IDENTITY = "identity";
+	private static final AsciiString CONTENT_TYPE_URL_ENCODED = AsciiString.of( "application/x-www-form-urlencoded" );
+	private static final AsciiString CONTENT_TYPE_MULTIPART = AsciiString.of( "multipart" );
+
+	//
+	// Header names that are sent with most requests. These instances are reused,
+	// rather than creating a new string for every request
+	//
+	private static final AsciiString[] KNOWN_HEADERS = { AsciiString.of( "host" ), AsciiString.of( "connection" ),
+			AsciiString.of( "accept" ), AsciiString.of( "accept-encoding" ), AsciiString.of( "accept-language" ),
+			AsciiString.of( "user-agent" ), AsciiString.of( "cookie" ), AsciiString.of( "referer" ),
+			AsciiString.of( "cache-control" ), AsciiString.of( "pragma" ), AsciiString.of( "if-none-match" ),
+			AsciiString.of( "if-modified-since" ), AsciiString.of( "range" ), AsciiString.of( "if-range" ),
+			AsciiString.of( "authorization" ), AsciiString.of( "upgrade-insecure-requests" ), AsciiString.of( "dnt" ),
+			AsciiString.of( "origin" ), CONTENT_TYPE, CONTENT_LENGTH };
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+	private static final AsciiString[] KNOWN_VERSIONS = { AbstractRequest.HTTP_1_1, AbstractRequest.HTTP_1_0 };
+
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	private static final byte SPACE = ' ';
+	private static final byte TAB = '\t';
+	private static final byte COLON = ':';
+
+	private final AbstractRequest abstractRequest;
+	private State state = State.REQUEST_LINE;
+	private ByteBuf lineBuffer;
+	private ByteBuf overloadBuffer;
+	private int contentLength = -1;
+
+	RequestParser(final AbstractRequest abstractRequest)
+	{
+		this.abstractRequest = abstractRequest;
+	}
+
+	/**
+	 * Check whether the parser is done reading the request
+	 *
+	 * @return true if the HTTP request is read, false if not
+	 */
+	boolean isDone()
+	{
+		return this.state == State.DONE;
+	}
+
+	/**
+	 * Read as much of the request as the buffer contains. The reader index of the buffer is moved past the bytes that
+	 * were consumed. Once the request is complete, the parser stops reading, and any bytes that belong to the next
+	 * request are left in the buffer.
+	 *
+	 * @param buf Inbound message
+	 * @throws Throwable If the request is malformed, or exceeds the configured limits
+	 */
+	void parse(final ByteBuf buf) throws Throwable
+	{
+		try
+		{
+			this.readMessage( buf );
+		} catch ( final ReturnStatus returnStatus )
+		{
+			//
+			// The error response is generated for the request, which has no query
+			// if the request line itself was rejected
+			//
+			if ( this.abstractRequest.getQuery() == null )
+			{
+				RequestCompiler.compileQuery( this.abstractRequest, HttpMethod.GET, "/" );
+			}
+			throw returnStatus;
+		}
+	}
+
+	private void readMessage(final ByteBuf buf) throws Throwable
+	{
+		while ( this.state != State.DONE && buf.isReadable() )
+		{
+			if ( this.state == State.BODY )
+			{
+				this.readBody( buf );
+				continue;
+			}
+			final int lineEnd = buf.indexOf( buf.readerIndex(), buf.writerIndex(), LF );
+			if ( lineEnd == -1 )
+			{
+				// The rest of the line will arrive with the next message
+				this.bufferLine( buf, buf.readableBytes() );
+				return;
+			}
+			if ( this.lineBuffer != null && this.lineBuffer.isReadable() )
+			{
+				this.bufferLine( buf, lineEnd - buf.readerIndex() );
+				buf.skipBytes( 1 );
+				this.readLine( this.lineBuffer, this.lineBuffer.readerIndex(), this.lineBuffer.writerIndex() );
+				this.lineBuffer.clear();
+			} else
+			{
+				final int lineStart = buf.readerIndex();
+				buf.readerIndex( lineEnd + 1 );
+				this.readLine( buf, lineStart, lineEnd );
+			}
+		}
+	}
+
+	private void bufferLine(final ByteBuf buf, final int length) throws ReturnStatus
+	{
+		if ( this.lineBuffer == null )
+		{
+			this.lineBuffer = ByteBufAllocator.DEFAULT.heapBuffer( Math.min( length, 256 ) );
+		}
+		if ( this.lineBuffer.readableBytes() + length > CoreConfig.Limits.limitRequestLineSize )
+		{
+			throw new ReturnStatus( Header.STATUS_BAD_REQUEST, null );
+		}
+		this.lineBuffer.writeBytes( buf, length );
+	}
+
+	private void readLine(final ByteBuf source, final int start, int end) throws Throwable
+	{
+		if ( end > start && source.getByte( end - 1 ) == CR )
+		{
+			end--;
+		}
+		if ( end - start > CoreConfig.Limits.limitRequestLineSize )
+		{
+			throw new ReturnStatus( Header.STATUS_BAD_REQUEST, null );
+		}
+		if ( this.state == State.REQUEST_LINE )
+		{
+			// Empty lines in front of the request line are ignored
+			if ( end > start )
+			{
+				this.readRequestLine( source, start, end );
+				this.state = State.HEADERS;
+			}
+		} else if ( end > start )
+		{
+			this.readHeader( source, start, end );
+		} else
+		{
+			this.readHeadersFinished();
+		}
+	}
+
+	private void readRequestLine(final ByteBuf source, final int start, final int end) throws ReturnStatus
+	{
+		final int methodEnd = source.indexOf( start, end, SPACE );
+		if ( methodEnd == -1 )
+		{
+			throw new ReturnStatus( Header.STATUS_BAD_REQUEST, null );
+		}
+		final HttpMethod method = getMethod( source, start, methodEnd );
+		if ( method == null )
+		{
+			throw new ReturnStatus( Header.STATUS_NOT_ALLOWED, null );
+		}
+		int resourceEnd = source.indexOf( methodEnd + 1, end, SPACE );
+		if ( resourceEnd == -1 )
+		{
+			resourceEnd = end;
+		}
+		for ( int i = methodEnd + 1; i < resourceEnd; i++ )
+		{
+			if ( !isResourceCharacter( source.getByte( i ) ) )
+			{
+				throw new ReturnStatus( Header.STATUS_BAD_REQUEST, null );
+			}
+		}
+		final String resource = source.toString( methodEnd + 1, resourceEnd - methodEnd - 1,
+				StandardCharsets.US_ASCII );
+		if ( CoreConfig.verbose )
+		{
+			Logger.info( "Query: {}", source.toString( start, end - start, StandardCharsets.US_ASCII ) );
+		}
+		RequestCompiler.compileQuery( this.abstractRequest, method, resource );
+		//
+		// Request lines without a version predate HTTP/1.1, and are answered
+		// the same way as HTTP/1.0 requests
+		//
+		this.abstractRequest.setHttpVersion( resourceEnd == end
+				? AbstractRequest.HTTP_1_0
+				: getVersion( source, resourceEnd + 1, end ) );
+	}
+
+	private void readHeader(final ByteBuf source, final int start, final int end)
+	{
+		final int colon = source.indexOf( start, end, COLON );
+		int keyEnd = colon;
+		while ( keyEnd > start && isWhitespace( source.getByte( keyEnd - 1 ) ) )
+		{
+			keyEnd--;
+		}
+		if ( colon == -1 || keyEnd == start || !isHeaderNameValid( source, start, keyEnd ) )
+		{
+			Logger.warn( "Failed to read request header line: '{}'",
+					source.toString( start, end - start, StandardCharsets.US_ASCII ) );
+			return;
+		}
+		int valueStart = colon + 1;
+		int valueEnd = end;
+		while ( valueStart < valueEnd && isWhitespace( source.getByte( valueStart ) ) )
+		{
+			valueStart++;
+		}
+		while ( valueEnd > valueStart && isWhitespace( source.getByte( valueEnd - 1 ) ) )
+		{
+			valueEnd--;
+		}
+		final byte[] value = new byte[ valueEnd - valueStart ];
+		source.getBytes( valueStart, value );
+		this.abstractRequest.getHeaders().put( getHeaderName( source, start, keyEnd ), AsciiString.of( value ) );
+	}
+
+	private void readHeadersFinished() throws ReturnStatus
+	{
+		//
+		// Bodies are only read using their content length. Encoded bodies would otherwise
+		// be left in the buffer, and read as if they were the next request
+		//
+		final AsciiString transferEncoding = this.abstractRequest.getHeader( TRANSFER_ENCODING );
+		if ( !transferEncoding.isEmpty() && !transferEncoding.equalsIgnoreCase( IDENTITY ) )
+		{
+			throw new ReturnStatus( transferEncoding.toLowerCase().endsWith( CHUNKED )
+					? Header.STATUS_LENGTH_REQUIRED
+					: Header.STATUS_NOT_IMPLEMENTED, null );
+		}
+		final AsciiString contentLength = this.abstractRequest.getHeader( CONTENT_LENGTH );
+		if ( contentLength.isEmpty() )
+		{
+			this.state = State.DONE;
+			return;
+		}
+		if ( !contentLength.isInteger() || contentLength.charAt( 0 ) == '-' )
+		{
+			throw new ReturnStatus( Header.STATUS_BAD_REQUEST, null );
+		}
+		// Lengths that do not fit in an integer are way above the limit anyway
+		this.contentLength = contentLength.length() > 9
+				? Integer.MAX_VALUE
+				: contentLength.toInteger();
+		if ( this.contentLength >= CoreConfig.Limits.limitPostBasicSize )
+		{
+			if ( CoreConfig.debug )
+			{
+				Logger.debug( "Supplied post body size too large ({0} > {1})", contentLength,
+						CoreConfig.Limits.limitPostBasicSize );
+			}
+			throw new ReturnStatus( Header.STATUS_ENTITY_TOO_LARGE, null );
+		}
+		this.overloadBuffer = ByteBufAllocator.DEFAULT.buffer( this.contentLength );
+		this.state = State.BODY;
+		if ( this.contentLength == 0 )
+		{
+			this.readBodyFinished();
+		}
+	}
+
+	private void readBody(final ByteBuf buf)
+	{
+		final int length = Math.min( buf.readableBytes(), this.contentLength - this.overloadBuffer.readableBytes() );
+		this.overloadBuffer.writeBytes( buf, length );
+		if ( this.overloadBuffer.readableBytes() == this.contentLength )
+		{
+			this.readBodyFinished();
+		}
+	}
+
+	private void readBodyFinished()
+	{
+		readPostRequest( this.abstractRequest, this.overloadBuffer );
+		this.state = State.DONE;
+	}
+
+	/**
+	 * Create the post request of a request from its body, depending on the content type of the request
+	 *
+	 * @param abstractRequest Request
+	 * @param overloadBuffer Request body
+	 */
+	static void readPostRequest(final AbstractRequest abstractRequest, final ByteBuf overloadBuffer)
+	{
+		final int contentLength = overloadBuffer.readableBytes();
+		final AsciiString contentType = abstractRequest.getHeader( CONTENT_TYPE );
+		boolean isFormURLEncoded;
+
+		if ( ( isFormURLEncoded = contentType.startsWith( CONTENT_TYPE_URL_ENCODED ) ) || ( EntityType.JSON
+				.getContentType().startsWith( contentType.toString() ) ) )
+		{
+			try
+			{
+				final String content = overloadBuffer.readCharSequence( contentLength, StandardCharsets.UTF_8 )
+						.toString();
+
+				if ( isFormURLEncoded )
+				{
+					abstractRequest.setPostRequest( new UrlEncodedPostRequest( abstractRequest, content ) );
+				} else
+				{
+					abstractRequest.setPostRequest( new JsonPostRequest( abstractRequest, content ) );
+				}
+			} catch ( final Exception e )
+			{
+				Logger.warn( "Failed to read url encoded postAbstractRequest (Request: {0}): {1}", abstractRequest,
+						e.getMessage() );
+			}
+		} else if ( contentType.startsWith( CONTENT_TYPE_MULTIPART ) )
+		{
+			byte[] bytes = new byte[ contentLength ];
+			overloadBuffer.readBytes( bytes );
+			abstractRequest.setOverloadBytes( bytes );
+			abstractRequest.setPostRequest( new MultipartPostRequest( abstractRequest, "" ) );
+		} else
+		{
+			Logger.warn( "Request provided unknown post request type (Request: {0}): {1}", abstractRequest,
+					contentType );
+			abstractRequest.setPostRequest( new DummyPostRequest( abstractRequest, "" ) );
+		}
+	}
+
+	private static HttpMethod getMethod(final ByteBuf source, final int start, final int end)
+	{
+		for ( final HttpMethod method : METHODS )
+		{
+			final String name = method.name();
+			if ( name.length() != end - start )
+			{
+				continue;
+			}
+			int i = 0;
+			while ( i < name.length() && toUpperCase( source.getByte( start + i ) ) == name.charAt( i ) )
+			{
+				i++;
+			}
+			if ( i == name.length() )
+			{
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the HTTP version stored in the given range. Known versions are shared between requests
+	 */
+	private static AsciiString getVersion(final ByteBuf source, final int start, final int end)
+	{
+		final int length = end - start;
+		for ( final AsciiString known : KNOWN_VERSIONS )
+		{
+			final byte[] value = known.getValue();
+			if ( value.length != length )
+			{
+				continue;
+			}
+			int i = 0;
+			while ( i < length && source.getByte( start + i ) == value[ i ] )
+			{
+				i++;
+			}
+			if ( i == length )
+			{
+				return known;
+			}
+		}
+		final byte[] version = new byte[ length ];
+		source.getBytes( start, version );
+		return AsciiString.of( version );
+	}
+
+	/**
+	 * Get the lower case header name stored in the given range. Names of common headers are shared between requests
+	 */
+	private static AsciiString getHeaderName(final ByteBuf source, final int start, final int end)
+	{
+		final int length = end - start;
+		for ( final AsciiString known : KNOWN_HEADERS )
+		{
+			final byte[] value = known.getValue();
+			if ( value.length != length )
+			{
+				continue;
+			}
+			int i = 0;
+			while ( i < length && toLowerCase( source.getByte( start + i ) ) == value[ i ] )
+			{
+				i++;
+			}
+			if ( i == length )
+			{
+				return known;
+			}
+		}
+		final byte[] name = new byte[ length ];
+		for ( int i = 0; i < length; i++ )
+		{
+			name[ i ] = toLowerCase( source.getByte( start + i ) );
+		}
+		return AsciiString.of( name );
+	}
+
+	private static boolean isHeaderNameValid(final ByteBuf source, final int start, final int end)
+	{
+		for ( int i = start; i < end; i++ )
+		{
+			final byte b = source.getByte( i );
+			if ( !isAlphaNumeric( b ) && b != '-' && b != '_' )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether a character may be used in a request target, which consists of the unreserved, reserved and
+	 * percent-encoded characters defined by RFC 3986
+	 */
+	static boolean isResourceCharacter(final byte b)
+	{
+		if ( isAlphaNumeric( b ) )
+		{
+			return true;
+		}
+		switch ( b )
+		{
+			case '-':
+			case '.':
+			case '_':
+			case '~':
+			case '!':
+			case '$':
+			case '&':
+			case '\'':
+			case '(':
+			case ')':
+			case '*':
+			case '+':
+			case ',':
+			case ';':
+			case '=':
+			case ':':
+			case '@':
+			case '/':
+			case '?':
+			case '%':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isAlphaNumeric(final byte b)
+	{
+		return ( b >= 'a' && b <= 'z' ) || ( b >= 'A' && b <= 'Z' ) || ( b >= '0' && b <= '9' );
+	}
+
+	private static boolean isWhitespace(final byte b)
+	{
+		return b == SPACE || b == TAB;
+	}
+
+	private static byte toLowerCase(final byte b)
+	{
+		return b >= 'A' && b <= 'Z'
+				? ( byte ) ( b + 32 )
+				: b;
+	}
+
+	private static byte toUpperCase(final byte b)
+	{
+		return b >= 'a' && b <= 'z'
+				? ( byte ) ( b - 32 )
+				: b;
+	}
+
+	/**
+	 * Release the buffers held by the parser
+	 */
+	void clear()
+	{
+		if ( this.lineBuffer != null )
+		{
+			this.lineBuffer.release();
+			this.lineBuffer = null;
+		}
+		if ( this.overloadBuffer != null )
+		{
+			this.overloadBuffer.release();
+			this.overloadBuffer = null;
+		}
+		this.contentLength = -1;
+	}
+
+	private enum State
+	{
+		REQUEST_LINE, HEADERS, BODY, DONE
+	}
+
+}
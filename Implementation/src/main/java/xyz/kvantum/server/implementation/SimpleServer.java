@@ -25,6 +25,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.intellectualsites.commands.CommandManager;
 import com.intellectualsites.configurable.ConfigurationFactory;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -33,6 +34,11 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.UnknownHostException;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -112,6 +118,8 @@ public class SimpleServer implements Kvantum
 
 	static ObjectPool<GzipHandler> gzipHandlerPool;
 	static ObjectPool<Md5Handler> md5HandlerPool;
+	static ExecutorService requestWorkerPool;
+	static ExecutorService eventPublisherPool;
 
 	//region Instance fields
 	@Getter private final WorkerProcedure procedure = new WorkerProcedure();
@@ -424,6 +432,22 @@ public class SimpleServer implements Kvantum
 			gzipHandlerPool = new ObjectPool<>( CoreConfig.Pools.gzipHandlers, GzipHandler::new );
 		}
 		md5HandlerPool = new ObjectPool<>( CoreConfig.Pools.md5Handlers, Md5Handler::new );
+		final int requestWorkerThreads = CoreConfig.Pools.requestWorkerThreads > 0
+				? CoreConfig.Pools.requestWorkerThreads
+				: Runtime.getRuntime().availableProcessors() * 2;
+		requestWorkerPool = Executors
+				.newFixedThreadPool( requestWorkerThreads, new DefaultThreadFactory( "request-worker", true ) );
+		//
+		// High frequency events are published away from the event loops. When the queue
+		// is full, the emitting thread publishes the event itself
+		//
+		if ( CoreConfig.Pools.eventPublisherThreads > 0 )
+		{
+			eventPublisherPool = new ThreadPoolExecutor( CoreConfig.Pools.eventPublisherThreads,
+					CoreConfig.Pools.eventPublisherThreads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>( Math.max( 1, CoreConfig.Pools.eventPublisherQueueSize ) ),
+					new DefaultThreadFactory( "event-publisher", true ), new ThreadPoolExecutor.CallerRunsPolicy() );
+		}
 
 		try
 		{
@@ -628,11 +652,28 @@ public class SimpleServer implements Kvantum
 			{
 				httpsThread.close();
 			}
+			if ( requestWorkerPool != null )
+			{
+				requestWorkerPool.shutdown();
+			}
+			if ( eventPublisherPool != null )
+			{
+				eventPublisherPool.shutdown();
+				eventPublisherPool.awaitTermination( 5, TimeUnit.SECONDS );
+			}
 		} catch ( final Exception e )
 		{
 			e.printStackTrace();
 		}
 
+		//
+		// Write the remaining sessions, before the databases are closed
+		//
+		if ( sessionManager != null )
+		{
+			sessionManager.close();
+		}
+
 		//
 		// Shutdown utilities
 		//
@@ -22,6 +22,9 @@
 package xyz.kvantum.server.implementation;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -30,7 +33,7 @@ import xyz.kvantum.server.api.config.Message;
 import xyz.kvantum.server.api.core.Kvantum;
 import xyz.kvantum.server.api.core.WorkerProcedure;
 import xyz.kvantum.server.api.request.AbstractRequest;
-import xyz.kvantum.server.api.response.Header;
+import xyz.kvantum.server.api.response.ContentEncoding;
 import xyz.kvantum.server.api.response.ResponseBody;
 import xyz.kvantum.server.api.socket.SocketContext;
 import xyz.kvantum.server.api.util.AsciiString;
@@ -42,43 +45,66 @@ import xyz.kvantum.server.api.views.RequestHandler;
 	private static final String CONTENT_TYPE = "content_type";
 	private static final byte[] EMPTY = "NULL".getBytes( StandardCharsets.UTF_8 );
 	private static final AsciiString ACCEPT_ENCODING = AsciiString.of( "Accept-Encoding" );
-	private static final AsciiString GZIP = AsciiString.of( "gzip" );
+	private static final Collection<ContentEncoding> GZIP_AND_DEFLATE = Arrays
+			.asList( ContentEncoding.GZIP, ContentEncoding.DEFLATE );
+	private static final Collection<ContentEncoding> GZIP = Collections.singletonList( ContentEncoding.GZIP );
+	private static final Collection<ContentEncoding> DEFLATE = Collections.singletonList( ContentEncoding.DEFLATE );
 
 	private final Kvantum server;
 	private final WorkerProcedure.WorkerProcedureInstance workerProcedureInstance;
 
-	private final KvantumServerHandler kvantumServerHandler;
-
 	private RequestHandler requestHandler;
 	private AbstractRequest request;
 	private ResponseBody body;
-	private boolean gzip;
+	private ContentEncoding contentEncoding;
 	private SocketContext socketContext;
 	private byte[] bytes;
 
 	/**
 	 * TODO: I am fairly confident this would be better somewhere else
 	 *
-	 * <p> Determine whether or not GZIP compression should be used. This depends on two things: <ol> <li>If GZIP
-	 * compression is enabled in {@link CoreConfig}</li> <li>If the client has sent a "Accept-Encoding" header</li>
-	 * </ol> </p> <p> The value can be fetched using {@link #isGzip()} </p>
+	 * <p> Determine which content coding the response should be compressed with. This depends on two things: <ol>
+	 * <li>Which codings are enabled in {@link CoreConfig}</li> <li>Which codings the client accepts, according to its
+	 * "Accept-Encoding" header</li> </ol> </p> <p> Bodies that are served directly from files are never compressed.
+	 * The value can be fetched using {@link #getContentEncoding()}, and is null if the response shouldn't be
+	 * compressed </p>
 	 */
-	void determineGzipStatus()
+	void determineContentEncoding()
 	{
-		if ( CoreConfig.gzip )
+		this.contentEncoding = null;
+		if ( !this.isCompressible() )
+		{
+			return;
+		}
+		this.contentEncoding = ContentEncoding.select( request.getHeader( ACCEPT_ENCODING ), getAvailableEncodings() );
+		if ( this.contentEncoding == null && CoreConfig.debug )
 		{
-			if ( request.getHeader( ACCEPT_ENCODING ).contains( "gzip" ) )
-			{
-				this.gzip = true;
-				body.getHeader().set( Header.HEADER_CONTENT_ENCODING, GZIP );
-			} else if ( CoreConfig.debug )
-			{
-				Message.CLIENT_NOT_ACCEPTING_GZIP.log( request.getHeaders() );
-			}
-		} else
+			Message.CLIENT_NOT_ACCEPTING_GZIP.log( request.getHeaders() );
+		}
+	}
+
+	/**
+	 * Check whether the response body may be compressed, in which case its representation depends on the
+	 * "Accept-Encoding" header of the request. Files are only compressed if they are small enough to be served from
+	 * the off-heap content cache, where their compressed variants are stored as well
+	 *
+	 * @return True if the body may be compressed
+	 */
+	boolean isCompressible()
+	{
+		return ( CoreConfig.gzip || CoreConfig.deflate ) && ( body.getFile() == null
+				|| body.getFile().length() < CoreConfig.Buffer.fileTransferThreshold );
+	}
+
+	private static Collection<ContentEncoding> getAvailableEncodings()
+	{
+		if ( CoreConfig.gzip )
 		{
-			this.gzip = false;
+			return CoreConfig.deflate
+					? GZIP_AND_DEFLATE
+					: GZIP;
 		}
+		return DEFLATE;
 	}
 
 }
@@ -24,6 +24,8 @@ package xyz.kvantum.server.implementation.mysql;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import xyz.kvantum.server.api.session.ISession;
@@ -101,6 +103,36 @@ import xyz.kvantum.server.implementation.MySQLApplicationStructure;
 		}
 	}
 
+	@Override public void storeSessions(@NonNull final Collection<ISession> sessions) throws SQLException
+	{
+		try ( final Connection connection = applicationStructure.getDatabaseManager().getConnection() )
+		{
+			connection.setAutoCommit( false );
+			try ( final PreparedStatement statement = connection.prepareStatement(
+					"INSERT INTO sessions(`id`, `last_active`, `session_key`) VALUES(?, ?, ?)"
+							+ " ON DUPLICATE KEY UPDATE `last_active` = VALUES(`last_active`)" ) )
+			{
+				final long now = System.currentTimeMillis();
+				for ( final ISession session : sessions )
+				{
+					statement.setString( 1, session.get( "id" ).toString() );
+					statement.setLong( 2, now );
+					statement.setString( 3, session.getSessionKey().toString() );
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				connection.commit();
+			} catch ( final SQLException e )
+			{
+				connection.rollback();
+				throw e;
+			} finally
+			{
+				connection.setAutoCommit( true );
+			}
+		}
+	}
+
 	@Override public void deleteSession(@NonNull final AsciiString session)
 	{
 		try ( final Connection connection = applicationStructure.getDatabaseManager().getConnection() )
@@ -21,8 +21,11 @@
  */
 package xyz.kvantum.server.implementation.sqlite;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import xyz.kvantum.server.api.session.ISession;
@@ -87,6 +90,44 @@ import xyz.kvantum.server.implementation.SQLiteApplicationStructure;
 		}
 	}
 
+	@Override public void storeSessions(@NonNull final Collection<ISession> sessions) throws SQLException
+	{
+		//
+		// The SQLite version that ships with the driver doesn't support ON CONFLICT upserts, so new sessions are
+		// inserted (ignoring existing ones) and the last active time is then updated for all of them. The batch is
+		// written in a transaction on a connection of its own, as the shared connection is used in auto-commit mode
+		//
+		try ( final Connection connection = this.applicationStructure.getDatabaseManager().openConnection() )
+		{
+			connection.setAutoCommit( false );
+			try ( final PreparedStatement insert = connection.prepareStatement(
+					"INSERT OR IGNORE INTO sessions(`id`,`last_active`, `session_key`) VALUES(?, ?, ?)" );
+					final PreparedStatement update = connection
+							.prepareStatement( "UPDATE sessions SET last_active = ? WHERE id = ?" ) )
+			{
+				final long now = System.currentTimeMillis();
+				for ( final ISession session : sessions )
+				{
+					final String id = session.get( "id" ).toString();
+					insert.setString( 1, id );
+					insert.setLong( 2, now );
+					insert.setString( 3, session.getSessionKey().toString() );
+					insert.addBatch();
+					update.setLong( 1, now );
+					update.setString( 2, id );
+					update.addBatch();
+				}
+				insert.executeBatch();
+				update.executeBatch();
+				connection.commit();
+			} catch ( final SQLException e )
+			{
+				connection.rollback();
+				throw e;
+			}
+		}
+	}
+
 	@Override public void deleteSession(@NonNull final AsciiString session)
 	{
 		try ( final PreparedStatement statement = this.applicationStructure.getDatabaseManager()
@@ -0,0 +1,67 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ChunkedResponseStreamTest
+{
+
+	private static String writeAndRead(final boolean chunked, final String... parts) throws IOException
+	{
+		final EmbeddedChannel channel = new EmbeddedChannel( new ChannelInboundHandlerAdapter() );
+		final ChunkedResponseStream stream = new ChunkedResponseStream( channel.pipeline().firstContext(), chunked,
+				4 );
+		for ( final String part : parts )
+		{
+			stream.write( part.getBytes( StandardCharsets.US_ASCII ) );
+		}
+		stream.close();
+		final StringBuilder builder = new StringBuilder();
+		ByteBuf buf;
+		while ( ( buf = channel.readOutbound() ) != null )
+		{
+			builder.append( buf.toString( StandardCharsets.US_ASCII ) );
+			buf.release();
+		}
+		channel.finish();
+		return builder.toString();
+	}
+
+	@Test void writeChunked() throws IOException
+	{
+		assertEquals( "4\r\nabcd\r\n2\r\nef\r\n0\r\n\r\n", writeAndRead( true, "abc", "def" ) );
+	}
+
+	@Test void writePlain() throws IOException
+	{
+		assertEquals( "abcdef", writeAndRead( false, "abc", "def" ) );
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ConnectionThrottleTest
+{
+
+	private static final long TIME_SPAN = TimeUnit.SECONDS.toNanos( 3 );
+
+	@Test void shouldThrottle()
+	{
+		final ConnectionThrottle throttle = new ConnectionThrottle( TIME_SPAN, 3, 10 );
+		final long now = System.nanoTime();
+		assertFalse( throttle.shouldThrottle( "127.0.0.1", now ) );
+		assertFalse( throttle.shouldThrottle( "127.0.0.1", now ) );
+		assertFalse( throttle.shouldThrottle( "127.0.0.1", now ) );
+		assertTrue( throttle.shouldThrottle( "127.0.0.1", now ) );
+		// Other addresses have their own buckets
+		assertFalse( throttle.shouldThrottle( "127.0.0.2", now ) );
+		// One token is refilled every second
+		assertFalse( throttle.shouldThrottle( "127.0.0.1", now + TimeUnit.SECONDS.toNanos( 1 ) ) );
+		assertTrue( throttle.shouldThrottle( "127.0.0.1", now + TimeUnit.SECONDS.toNanos( 1 ) ) );
+		// The bucket never holds more than the limit
+		final long later = now + TIME_SPAN * 10;
+		for ( int i = 0; i < 3; i++ )
+		{
+			assertFalse( throttle.shouldThrottle( "127.0.0.1", later ) );
+		}
+		assertTrue( throttle.shouldThrottle( "127.0.0.1", later ) );
+	}
+
+}
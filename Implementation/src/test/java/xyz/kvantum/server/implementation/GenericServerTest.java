@@ -28,7 +28,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Optional;
 import org.apache.commons.io.FileUtils;
-import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.TestInstance;
 import xyz.kvantum.server.api.config.CoreConfig;
@@ -38,6 +37,13 @@ import xyz.kvantum.server.api.util.RequestManager;
 @TestInstance(TestInstance.Lifecycle.PER_CLASS) public class GenericServerTest
 {
 
+	//
+	// Only one server implementation can be registered per JVM, so every
+	// server test shares the instance created by the first one to run
+	//
+	private static File sharedFolder;
+	private static Kvantum sharedInstance;
+
 	protected File temporaryFolder;
 	protected Kvantum serverInstance;
 
@@ -53,12 +59,23 @@ import xyz.kvantum.server.api.util.RequestManager;
 
 	@BeforeAll void initAll()
 	{
-		this.temporaryFolder = getFileIfNotExists( "temporaryFolder" );
-		if ( !this.temporaryFolder.mkdir() )
+		if ( sharedInstance == null )
+		{
+			sharedFolder = getFileIfNotExists( "temporaryFolder" );
+			sharedInstance = createServer( sharedFolder );
+		}
+		this.temporaryFolder = sharedFolder;
+		this.serverInstance = sharedInstance;
+	}
+
+	private static Kvantum createServer(final File temporaryFolder)
+	{
+		if ( !temporaryFolder.mkdir() )
 		{
 			System.out.println( "ERROR: Failed to create temporary folder: " + temporaryFolder );
 			System.exit( -1 );
 		}
+		Runtime.getRuntime().addShutdownHook( new Thread( () -> deleteFolder( temporaryFolder ) ) );
 
 		CoreConfig.setPreConfigured( true );
 		CoreConfig.exitOnStop = false;
@@ -81,10 +98,10 @@ import xyz.kvantum.server.api.util.RequestManager;
 		final Optional<Kvantum> serverOptional = serverContext.create();
 		assertTrue( serverOptional.isPresent() );
 
-		this.serverInstance = serverOptional.get();
+		return serverOptional.get();
 	}
 
-	@AfterAll void tearDownAll()
+	private static void deleteFolder(final File temporaryFolder)
 	{
 		try
 		{
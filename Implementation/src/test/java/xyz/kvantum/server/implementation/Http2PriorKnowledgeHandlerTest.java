@@ -0,0 +1,68 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class Http2PriorKnowledgeHandlerTest
+{
+
+	private static ByteBuf buffer(final String content)
+	{
+		return Unpooled.copiedBuffer( content, StandardCharsets.US_ASCII );
+	}
+
+	@Test void passHttp1Through()
+	{
+		final EmbeddedChannel channel = new EmbeddedChannel( new Http2PriorKnowledgeHandler() );
+		channel.writeInbound( buffer( "GET / HTTP/1.1\r\n\r\n" ) );
+		assertNull( channel.pipeline().get( Http2PriorKnowledgeHandler.class ) );
+		final ByteBuf read = channel.readInbound();
+		assertEquals( "GET / HTTP/1.1\r\n\r\n", read.toString( StandardCharsets.US_ASCII ) );
+		read.release();
+		channel.finish();
+	}
+
+	@Test void holdPartialPreface()
+	{
+		final EmbeddedChannel channel = new EmbeddedChannel( new Http2PriorKnowledgeHandler() );
+		channel.writeInbound( buffer( "PRI * HTTP/2.0\r\n" ) );
+		assertNotNull( channel.pipeline().get( Http2PriorKnowledgeHandler.class ) );
+		assertNull( channel.readInbound() );
+		// Requests that merely start like the preface are still passed on
+		channel.writeInbound( buffer( "\r\nXX" ) );
+		assertNull( channel.pipeline().get( Http2PriorKnowledgeHandler.class ) );
+		final ByteBuf read = channel.readInbound();
+		assertEquals( "PRI * HTTP/2.0\r\n\r\nXX", read.toString( StandardCharsets.US_ASCII ) );
+		read.release();
+		channel.finish();
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class KvantumReadTimeoutHandlerTest
+{
+
+	private static final long TIMEOUT = 50;
+
+	/**
+	 * Stands in for {@link KvantumServerHandler}, suspending the timeout while a request is being answered
+	 */
+	private static final class SlowHandler extends ChannelInboundHandlerAdapter
+	{
+
+		private ChannelHandlerContext context;
+		private KvantumReadTimeoutHandler suspended;
+
+		@Override public void channelRead(final ChannelHandlerContext context, final Object message)
+		{
+			ReferenceCountUtil.release( message );
+			this.context = context;
+			this.suspended = KvantumReadTimeoutHandler.suspend( context );
+		}
+
+		void finish()
+		{
+			KvantumReadTimeoutHandler.resume( this.context, this.suspended );
+		}
+
+		@Override public void exceptionCaught(final ChannelHandlerContext context, final Throwable cause)
+		{
+			// The timeout handler closes the channel by itself
+		}
+	}
+
+	private static void runLongerThanTimeout(final EmbeddedChannel channel) throws InterruptedException
+	{
+		Thread.sleep( TIMEOUT * 3 );
+		channel.runScheduledPendingTasks();
+	}
+
+	@Test void suspendWhileHandling() throws InterruptedException
+	{
+		final SlowHandler handler = new SlowHandler();
+		final EmbeddedChannel channel = new EmbeddedChannel(
+				new KvantumReadTimeoutHandler( TIMEOUT, TimeUnit.MILLISECONDS ), handler );
+		channel.writeInbound( Unpooled.wrappedBuffer( new byte[] { 1 } ) );
+		// The handler takes longer than the timeout, which must not close the connection
+		runLongerThanTimeout( channel );
+		assertTrue( channel.isOpen() );
+		// Once the response has been sent, the timer starts over
+		handler.finish();
+		channel.runScheduledPendingTasks();
+		assertTrue( channel.isOpen() );
+		runLongerThanTimeout( channel );
+		assertFalse( channel.isOpen() );
+		channel.finishAndReleaseAll();
+	}
+
+}
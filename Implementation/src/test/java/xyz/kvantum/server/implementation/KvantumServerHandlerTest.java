@@ -0,0 +1,83 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.util.ProtocolType;
+
+class KvantumServerHandlerTest extends GenericServerTest
+{
+
+	private static ByteBuf buffer(final String content)
+	{
+		return Unpooled.copiedBuffer( content, StandardCharsets.US_ASCII );
+	}
+
+	private static String readResponse(final EmbeddedChannel channel)
+	{
+		final StringBuilder response = new StringBuilder();
+		ByteBuf buf;
+		while ( ( buf = channel.readOutbound() ) != null )
+		{
+			response.append( buf.toString( StandardCharsets.US_ASCII ) );
+			buf.release();
+		}
+		return response.toString();
+	}
+
+	@BeforeAll void initPools()
+	{
+		// The pools are created when the server starts, which these tests don't do
+		if ( SimpleServer.md5HandlerPool == null )
+		{
+			SimpleServer.md5HandlerPool = new ObjectPool<>( 1, Md5Handler::new );
+		}
+	}
+
+	@Test void rejectMalformedRequestLine()
+	{
+		assertRejected( "GET /<script> HTTP/1.1\r\n\r\n", "HTTP/1.1 400 Bad Request" );
+		assertRejected( "FETCH / HTTP/1.1\r\n\r\n", "HTTP/1.1 405 Method not allowed" );
+	}
+
+	private static void assertRejected(final String request, final String statusLine)
+	{
+		final EmbeddedChannel channel = new EmbeddedChannel( new KvantumServerHandler( ProtocolType.HTTP ) );
+		channel.writeInbound( buffer( request ) );
+		final String response = readResponse( channel );
+		assertNotNull( response );
+		assertTrue( response.startsWith( statusLine + "\n" ), response );
+		// The rest of a rejected request can't be told apart from the next one
+		assertFalse( channel.isOpen() );
+		channel.finishAndReleaseAll();
+	}
+
+}
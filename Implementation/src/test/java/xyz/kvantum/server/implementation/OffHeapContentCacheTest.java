@@ -0,0 +1,137 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.files.CachedFile;
+import xyz.kvantum.files.FileCacheManager;
+import xyz.kvantum.files.FileSystem;
+import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.response.ContentEncoding;
+
+class OffHeapContentCacheTest
+{
+
+	private static final FileCacheManager NO_CACHE = new FileCacheManager()
+	{
+		@Override public Optional<CachedFile> readCachedFile(final Path path)
+		{
+			return Optional.empty();
+		}
+
+		@Override public void writeCachedFile(final Path path, final CachedFile cachedFile)
+		{
+		}
+	};
+
+	@Test void getFileContent() throws Exception
+	{
+		final java.nio.file.Path folder = Files.createTempDirectory( "kvantum" );
+		Files.write( folder.resolve( "small.txt" ), "Hello World".getBytes( StandardCharsets.UTF_8 ) );
+		Files.write( folder.resolve( "large.txt" ), new byte[ 64 ] );
+		final FileSystem fileSystem = new FileSystem( folder, NO_CACHE );
+		final OffHeapContentCache cache = new OffHeapContentCache( 1024, 32, 60 );
+
+		final ByteBuf first = cache.getFileContent( fileSystem.getPath( "small.txt" ) );
+		assertNotNull( first );
+		assertTrue( first.isDirect() );
+		assertEquals( "Hello World", first.toString( StandardCharsets.UTF_8 ) );
+
+		// Cached content is shared, and survives the release of the handed out buffers
+		final ByteBuf second = cache.getFileContent( fileSystem.getPath( "small.txt" ) );
+		assertNotNull( second );
+		assertSame( first.unwrap(), second.unwrap() );
+		first.release();
+		second.release();
+		final ByteBuf third = cache.getFileContent( fileSystem.getPath( "small.txt" ) );
+		assertNotNull( third );
+		assertEquals( "Hello World", third.toString( StandardCharsets.UTF_8 ) );
+		third.release();
+
+		assertNull( cache.getFileContent( fileSystem.getPath( "large.txt" ) ) );
+	}
+
+	@Test void getEncodedFileContent() throws Exception
+	{
+		final java.nio.file.Path folder = Files.createTempDirectory( "kvantum" );
+		Files.write( folder.resolve( "small.txt" ), "Hello World".getBytes( StandardCharsets.UTF_8 ) );
+		final FileSystem fileSystem = new FileSystem( folder, NO_CACHE );
+		final OffHeapContentCache cache = new OffHeapContentCache( 1024, 32, 60 );
+		final AtomicInteger encodings = new AtomicInteger();
+		final OffHeapContentCache.Encoder encoder = content -> {
+			encodings.incrementAndGet();
+			return new String( content, StandardCharsets.UTF_8 ).toUpperCase().getBytes( StandardCharsets.UTF_8 );
+		};
+
+		// The content is only encoded once
+		for ( int i = 0; i < 2; i++ )
+		{
+			final ByteBuf encoded = cache
+					.getEncodedFileContent( fileSystem.getPath( "small.txt" ), ContentEncoding.GZIP, encoder );
+			assertNotNull( encoded );
+			assertEquals( "HELLO WORLD", encoded.toString( StandardCharsets.UTF_8 ) );
+			encoded.release();
+		}
+		assertEquals( 1, encodings.get() );
+
+		// Every encoding is stored separately from the identity content
+		final ByteBuf deflated = cache
+				.getEncodedFileContent( fileSystem.getPath( "small.txt" ), ContentEncoding.DEFLATE, encoder );
+		assertNotNull( deflated );
+		deflated.release();
+		assertEquals( 2, encodings.get() );
+		final ByteBuf identity = cache.getFileContent( fileSystem.getPath( "small.txt" ) );
+		assertNotNull( identity );
+		assertEquals( "Hello World", identity.toString( StandardCharsets.UTF_8 ) );
+		identity.release();
+	}
+
+	@Test void invalidate()
+	{
+		final OffHeapContentCache cache = new OffHeapContentCache( 1024, 32, 60 );
+		final ByteBuf content = Unpooled.directBuffer();
+		content.writeBytes( "Hello World".getBytes( StandardCharsets.UTF_8 ) );
+		final ByteBuf stored = cache.put( "key", content );
+		final ByteBuf cached = cache.get( "key" );
+		assertNotNull( cached );
+		cached.release();
+		cache.invalidate( "key" );
+		assertNull( cache.get( "key" ) );
+
+		// Buffers that were handed out stay readable until they are released
+		assertEquals( "Hello World", stored.toString( StandardCharsets.UTF_8 ) );
+		stored.release();
+	}
+
+}
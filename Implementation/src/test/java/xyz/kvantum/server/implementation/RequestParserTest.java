@@ -0,0 +1,140 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static xyz.kvantum.server.api.TestFixtures.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.response.Header;
+import xyz.kvantum.server.api.util.AsciiString;
+
+class RequestParserTest
+{
+
+	private static final String REQUEST = "GET /foo/bar?baz=1 HTTP/1.1\r\nHost: localhost\r\n"
+			+ "X-Custom-Header :  some value \r\nAccept-Encoding: gzip\r\n\r\n";
+
+	private static ByteBuf buffer(final String content)
+	{
+		return Unpooled.copiedBuffer( content, StandardCharsets.US_ASCII );
+	}
+
+	private static void assertParsed(final AbstractRequest request)
+	{
+		assertNotNull( request.getQuery() );
+		assertEquals( HttpMethod.GET, request.getQuery().getMethod() );
+		assertEquals( "/foo/bar", request.getQuery().getResource() );
+		assertEquals( "1", request.getQuery().getParameters().get( "baz" ) );
+		assertSame( AbstractRequest.HTTP_1_1, request.getHttpVersion() );
+		assertEquals( "localhost", request.getHeader( "host" ).toString() );
+		assertEquals( "some value", request.getHeader( "x-custom-header" ).toString() );
+		assertEquals( "gzip", request.getHeader( "accept-encoding" ).toString() );
+	}
+
+	@Test void parseSingleMessage() throws Throwable
+	{
+		final AbstractRequest request = request();
+		final RequestParser parser = new RequestParser( request );
+		parser.parse( buffer( REQUEST ) );
+		assertTrue( parser.isDone() );
+		assertParsed( request );
+		// Common header names are shared
+		final AsciiString host = AsciiString.of( "host" );
+		assertSame( host, request.getHeaders().keySet().stream().filter( host::equals ).findAny().orElse( null ) );
+	}
+
+	@Test void parseSplitMessages() throws Throwable
+	{
+		final AbstractRequest request = request();
+		final RequestParser parser = new RequestParser( request );
+		for ( final char character : REQUEST.toCharArray() )
+		{
+			assertFalse( parser.isDone() );
+			parser.parse( buffer( String.valueOf( character ) ) );
+		}
+		assertTrue( parser.isDone() );
+		assertParsed( request );
+		parser.clear();
+	}
+
+	@Test void parseVersion() throws Throwable
+	{
+		assertSame( AbstractRequest.HTTP_1_0, parseVersion( "GET / HTTP/1.0\r\n\r\n" ) );
+		assertSame( AbstractRequest.HTTP_1_0, parseVersion( "GET /\r\n\r\n" ) );
+		assertEquals( "HTTP/2.0", parseVersion( "GET / HTTP/2.0\r\n\r\n" ).toString() );
+	}
+
+	private static AsciiString parseVersion(final String content) throws Throwable
+	{
+		final AbstractRequest request = request();
+		new RequestParser( request ).parse( buffer( content ) );
+		return request.getHttpVersion();
+	}
+
+	@Test void parseBody() throws Throwable
+	{
+		final AbstractRequest request = request();
+		final RequestParser parser = new RequestParser( request );
+		parser.parse( buffer( "POST /form HTTP/1.1\r\nContent-Type: application/x-www-form-urlencoded\r\n"
+				+ "Content-Length: 7\r\n\r\nfoo" ) );
+		assertFalse( parser.isDone() );
+		final ByteBuf remaining = buffer( "=barGET / HTTP/1.1\r\n\r\n" );
+		parser.parse( remaining );
+		assertTrue( parser.isDone() );
+		assertEquals( "bar", request.getPostRequest().get( "foo" ) );
+		// Bytes that belong to the next request are left in the buffer
+		assertEquals( "GET / HTTP/1.1\r\n\r\n", remaining.toString( StandardCharsets.US_ASCII ) );
+		parser.clear();
+	}
+
+	@Test void rejectMalformed()
+	{
+		assertStatus( Header.STATUS_NOT_ALLOWED, "FETCH / HTTP/1.1\r\n\r\n" );
+		assertStatus( Header.STATUS_BAD_REQUEST, "GET /<script> HTTP/1.1\r\n\r\n" );
+		assertStatus( Header.STATUS_BAD_REQUEST, "POST / HTTP/1.1\r\nContent-Length: x\r\n\r\n" );
+		assertStatus( Header.STATUS_ENTITY_TOO_LARGE, "POST / HTTP/1.1\r\nContent-Length: 100000000\r\n\r\n" );
+		assertStatus( Header.STATUS_LENGTH_REQUIRED, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" );
+		assertStatus( Header.STATUS_NOT_IMPLEMENTED, "POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\n\r\n" );
+	}
+
+	private static void assertStatus(final AsciiString status, final String content)
+	{
+		final AbstractRequest request = request();
+		final ReturnStatus returnStatus = assertThrows( ReturnStatus.class,
+				() -> new RequestParser( request ).parse( buffer( content ) ) );
+		assertEquals( status, returnStatus.getStatus() );
+		// The error response is built from the query
+		assertNotNull( request.getQuery() );
+	}
+
+}
@@ -21,14 +21,21 @@
  */
 package xyz.kvantum.server.api.jtwig;
 
+import org.jtwig.JtwigTemplate;
+import org.jtwig.environment.DefaultEnvironmentConfiguration;
+import org.jtwig.environment.EnvironmentConfiguration;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.core.ServerImplementation;
+import xyz.kvantum.server.api.template.TemplateCache;
 import xyz.kvantum.server.api.template.TemplateHandler;
+import xyz.kvantum.server.api.views.RequestHandler;
 
 public class JTwigEngine extends TemplateHandler
 {
 
 	private static JTwigEngine instance;
+	private final EnvironmentConfiguration configuration = new DefaultEnvironmentConfiguration();
+	private final TemplateCache<JtwigTemplate> templates = new TemplateCache<>();
 
 	private JTwigEngine()
 	{
@@ -44,6 +51,20 @@ public class JTwigEngine extends TemplateHandler
 		return instance;
 	}
 
+	/**
+	 * Get the compiled version of a template generated by a request handler, compiling it if it hasn't been compiled
+	 * yet
+	 *
+	 * @param requestHandler Request handler that generated the template
+	 * @param in Template source
+	 * @return Compiled template
+	 */
+	JtwigTemplate getTemplate(final RequestHandler requestHandler, final String in)
+	{
+		return this.templates.get( requestHandler, in,
+				source -> JtwigTemplate.inlineTemplate( source, this.configuration ) );
+	}
+
 	public void onLoad()
 	{
 		ServerImplementation.getImplementation().getProcedure().addProcedure( "syntax", new SyntaxHandler( this ) );
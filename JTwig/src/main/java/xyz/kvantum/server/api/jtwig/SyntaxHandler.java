@@ -27,10 +27,7 @@ import java.util.Map;
 import java.util.Optional;
 import org.jtwig.JtwigModel;
 import org.jtwig.JtwigTemplate;
-import org.jtwig.environment.DefaultEnvironmentConfiguration;
-import org.jtwig.environment.EnvironmentConfiguration;
 import xyz.kvantum.server.api.request.AbstractRequest;
-import xyz.kvantum.server.api.template.TemplateHandler;
 import xyz.kvantum.server.api.template.TemplateSyntaxHandler;
 import xyz.kvantum.server.api.templates.TemplateManager;
 import xyz.kvantum.server.api.util.ProviderFactory;
@@ -40,37 +37,18 @@ import xyz.kvantum.server.api.views.RequestHandler;
 public class SyntaxHandler extends TemplateSyntaxHandler
 {
 
-	private final EnvironmentConfiguration configuration = new DefaultEnvironmentConfiguration();
-	private final Map<String, JtwigTemplate> templateStorage = new HashMap<>();
+	private final JTwigEngine jTwigEngine;
 
-	SyntaxHandler(TemplateHandler templateHandler)
+	SyntaxHandler(final JTwigEngine jTwigEngine)
 	{
-		super( templateHandler );
+		super( jTwigEngine );
+		this.jTwigEngine = jTwigEngine;
 	}
 
 	@Override protected String handle(final RequestHandler requestHandler, final AbstractRequest request,
 			final String in)
 	{
-		String out = in;
-		JtwigTemplate template = null;
-		boolean shouldCache = false;
-		if ( templateStorage.containsKey( requestHandler.getName() ) )
-		{
-			template = templateStorage.get( requestHandler.getName() );
-		} else
-		{
-			shouldCache = true;
-		}
-
-		if ( template == null )
-		{
-			template = JtwigTemplate.inlineTemplate( out, configuration );
-			if ( shouldCache )
-			{
-				templateStorage.put( requestHandler.getName(), template );
-			}
-		}
-
+		final JtwigTemplate template = jTwigEngine.getTemplate( requestHandler, in );
 		final JtwigModel model = JtwigModel.newModel();
 		final Map<String, ProviderFactory<? extends VariableProvider>> factories = new HashMap<>();
 
@@ -99,7 +77,6 @@ public class SyntaxHandler extends TemplateSyntaxHandler
 			model.with( entry.getKey(), entryObjects );
 		}
 
-		out = template.render( model );
-		return out;
+		return template.render( model );
 	}
 }
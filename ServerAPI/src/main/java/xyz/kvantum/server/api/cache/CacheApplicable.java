@@ -37,4 +37,14 @@ import xyz.kvantum.server.api.request.AbstractRequest;
 	 */
 	boolean isApplicable(AbstractRequest r);
 
+	/**
+	 * Get the request inputs, other than the request target, that the cached response depends on
+	 *
+	 * @return Cache variance
+	 */
+	default CacheVariance getCacheVariance()
+	{
+		return CacheVariance.NONE;
+	}
+
 }
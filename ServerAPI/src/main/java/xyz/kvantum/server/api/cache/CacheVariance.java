@@ -0,0 +1,154 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import xyz.kvantum.server.api.account.IAccount;
+import xyz.kvantum.server.api.account.roles.AccountRole;
+import xyz.kvantum.server.api.core.ServerImplementation;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.Cookie;
+import xyz.kvantum.server.api.util.ApplicationStructure;
+import xyz.kvantum.server.api.util.AsciiString;
+
+/**
+ * Declares the request inputs that a cached response body depends on. Cached bodies are always stored per request
+ * target (the method, resource and sorted query parameters), and additionally per value of every declared header,
+ * cookie and session variable, and optionally per set of account roles of the session account.
+ */
+@Getter @Builder @SuppressWarnings({ "unused", "WeakerAccess" }) public final class CacheVariance
+{
+
+	/**
+	 * Variance that only depends on the request target
+	 */
+	public static final CacheVariance NONE = CacheVariance.builder().build();
+
+	private static final AsciiString COOKIE = AsciiString.of( "Cookie" );
+
+	@Singular("header") private final List<String> headers;
+	@Singular("cookie") private final List<String> cookies;
+	@Singular("sessionVariable") private final List<String> sessionVariables;
+	private final boolean accountRoles;
+
+	/**
+	 * Check whether the variance depends on the client session, in which case responses must be marked as
+	 * varying by cookie
+	 *
+	 * @return True if cookies, session variables or account roles are declared
+	 */
+	public boolean isSessionDependent()
+	{
+		return !this.cookies.isEmpty() || !this.sessionVariables.isEmpty() || this.accountRoles;
+	}
+
+	/**
+	 * Get the names that should be added to the Vary header of responses cached using this variance
+	 *
+	 * @return Request header names
+	 */
+	public List<AsciiString> getVaryHeaders()
+	{
+		final List<AsciiString> varyHeaders = new ArrayList<>( this.headers.size() + 1 );
+		for ( final String header : this.headers )
+		{
+			varyHeaders.add( AsciiString.of( header ) );
+		}
+		if ( this.isSessionDependent() && !varyHeaders.contains( COOKIE ) )
+		{
+			varyHeaders.add( COOKIE );
+		}
+		return varyHeaders;
+	}
+
+	/**
+	 * Get the cache key of a request. Requests with the same key are served the same cached body
+	 *
+	 * @param request Request
+	 * @return Cache key
+	 */
+	public String getKey(@NonNull final AbstractRequest request)
+	{
+		final AbstractRequest.Query query = request.getQuery();
+		final StringBuilder key = new StringBuilder( query.getMethod().name() ).append( ' ' )
+				.append( query.getResource() );
+
+		//
+		// Parameters are sorted, so that their order doesn't matter
+		//
+		if ( !query.getParameters().isEmpty() )
+		{
+			char separator = '?';
+			for ( final Map.Entry<String, String> parameter : new TreeMap<>( query.getParameters() ).entrySet() )
+			{
+				key.append( separator ).append( parameter.getKey() ).append( '=' ).append( parameter.getValue() );
+				separator = '&';
+			}
+		}
+
+		for ( final String header : this.headers )
+		{
+			key.append( "\nh:" ).append( header ).append( '=' ).append( request.getHeader( header ) );
+		}
+		for ( final String cookie : this.cookies )
+		{
+			key.append( "\nc:" ).append( cookie ).append( '=' );
+			for ( final Cookie value : request.getCookies().get( AsciiString.of( cookie ) ) )
+			{
+				key.append( value.getValue() ).append( ';' );
+			}
+		}
+		for ( final String sessionVariable : this.sessionVariables )
+		{
+			key.append( "\ns:" ).append( sessionVariable ).append( '=' )
+					.append( request.getSession().get( sessionVariable ) );
+		}
+		if ( this.accountRoles )
+		{
+			key.append( "\nr:" );
+			getAccount( request ).ifPresent(
+					account -> account.getAccountRoles().stream().map( AccountRole::getRoleIdentifier ).sorted()
+							.forEach( role -> key.append( role ).append( ';' ) ) );
+		}
+		return key.toString();
+	}
+
+	private static Optional<IAccount> getAccount(final AbstractRequest request)
+	{
+		final ApplicationStructure applicationStructure = ServerImplementation.getImplementation()
+				.getApplicationStructure();
+		if ( applicationStructure == null || applicationStructure.getAccountManager() == null )
+		{
+			return Optional.empty();
+		}
+		return applicationStructure.getAccountManager().getAccount( request.getSession() );
+	}
+
+}
@@ -43,7 +43,8 @@ final public class CachedResponse implements ResponseBody
 	 */
 	public CachedResponse(@NonNull final ResponseBody parent)
 	{
-		this.header = parent.getHeader();
+		// The header is copied, as the parent is still modified while being sent
+		this.header = parent.getHeader().copy();
 		if ( parent.isText() )
 		{
 			this.bytes = parent.getContent().getBytes();
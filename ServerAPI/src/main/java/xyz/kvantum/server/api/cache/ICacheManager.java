@@ -22,9 +22,12 @@
 package xyz.kvantum.server.api.cache;
 
 import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import xyz.kvantum.files.CachedFile;
 import xyz.kvantum.files.Path;
 import xyz.kvantum.server.api.account.IAccount;
+import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.response.ResponseBody;
 import xyz.kvantum.server.api.views.RequestHandler;
 
@@ -98,30 +101,47 @@ public interface ICacheManager
 	void setCachedInclude(String group, String document);
 
 	/**
-	 * Check if there is a ResponseBody cached for the view
+	 * Check if there is a ResponseBody cached for a request. Responses are cached per request target and {@link
+	 * CacheApplicable#getCacheVariance()}
 	 *
-	 * @param view RequestHandler
+	 * @param view RequestHandler that serves the request
+	 * @param request Incoming request
 	 * @return true if there is a ResponseBody cached, else false
 	 */
-	boolean hasCache(RequestHandler view);
+	boolean hasCache(RequestHandler view, AbstractRequest request);
 
 	/**
-	 * Add a cached ResponseBody
+	 * Add a cached ResponseBody for a request
 	 *
 	 * @param view RequestHandler for which the caching will apply
+	 * @param request Request that the body was generated for
 	 * @param body ResponseBody (will generate a CachedResponseBody)
 	 * @see CachedResponse
 	 */
-	void setCache(RequestHandler view, ResponseBody body);
+	void setCache(RequestHandler view, AbstractRequest request, ResponseBody body);
 
 	/**
-	 * Get the cached response for a view
+	 * Get the cached response for a request
 	 *
-	 * @param view RequestHandler
-	 * @return the cached ResponseBody
-	 * @see #hasCache(RequestHandler) To check if the view has a cache
+	 * @param view RequestHandler that serves the request
+	 * @param request Incoming request
+	 * @return the cached ResponseBody, or null if there is none
+	 * @see #hasCache(RequestHandler, AbstractRequest) To check if the request has a cached response
 	 */
-	CachedResponse getCache(RequestHandler view);
+	@Nullable CachedResponse getCache(RequestHandler view, AbstractRequest request);
+
+	/**
+	 * Get the cached response for a request, or generate and cache it if there is none. Responses are cached per
+	 * request target and {@link CacheApplicable#getCacheVariance()}. Only one request at a time generates a missing
+	 * response, concurrent requests for the same response wait for it and are then served from the cache
+	 *
+	 * @param view RequestHandler that serves the request
+	 * @param request Incoming request
+	 * @param generator Function that generates the response, if it is not cached
+	 * @return Either the cached response, or the generated one. Null if the generator returned null
+	 */
+	@Nullable ResponseBody getCache(RequestHandler view, AbstractRequest request,
+			Function<AbstractRequest, ? extends ResponseBody> generator);
 
 	/**
 	 * Remove a file from the file cache
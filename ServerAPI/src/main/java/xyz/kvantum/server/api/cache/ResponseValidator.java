@@ -0,0 +1,142 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.cache;
+
+import java.util.Date;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.util.AsciiString;
+import xyz.kvantum.server.api.util.TimeUtil;
+
+/**
+ * Validators of a response, used to answer conditional requests
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7232">RFC 7232</a>
+ */
+@Getter @RequiredArgsConstructor public final class ResponseValidator
+{
+
+	private static final AsciiString IF_NONE_MATCH = AsciiString.of( "If-None-Match" );
+	private static final AsciiString IF_MODIFIED_SINCE = AsciiString.of( "If-Modified-Since" );
+	private static final String WEAK_PREFIX = "W/";
+
+	/**
+	 * Quoted entity tag
+	 */
+	@NonNull private final String entityTag;
+
+	/**
+	 * Last modification time in milliseconds since the epoch, or -1 if it is unknown
+	 */
+	private final long lastModified;
+
+	/**
+	 * Create a validator for a file, derived from its size and modification time
+	 *
+	 * @param path File
+	 * @return Validator
+	 */
+	public static ResponseValidator of(@NonNull final Path path)
+	{
+		final long lastModified = path.getLastModified();
+		return new ResponseValidator(
+				"\"" + Long.toHexString( path.length() ) + "-" + Long.toHexString( lastModified ) + "\"",
+				lastModified );
+	}
+
+	/**
+	 * Check whether the client already has the current version of the response
+	 *
+	 * @param request Incoming request
+	 * @return True if the response hasn't been modified
+	 */
+	public boolean isNotModified(@NonNull final AbstractRequest request)
+	{
+		return isNotModified( request, this.entityTag, this.lastModified );
+	}
+
+	/**
+	 * Get the last modification time as an HTTP-date
+	 *
+	 * @return Formatted timestamp
+	 */
+	public String getLastModifiedTimeStamp()
+	{
+		return TimeUtil.getHTTPTimeStamp( new Date( this.lastModified ) );
+	}
+
+	/**
+	 * Check whether the client already has the current version of a response, using the {@code If-None-Match} and
+	 * {@code If-Modified-Since} request headers. If-Modified-Since is only used if If-None-Match is absent.
+	 *
+	 * @param request Incoming request
+	 * @param entityTag Current entity tag, may be null
+	 * @param lastModified Last modification time in milliseconds since the epoch, or -1 if it is unknown
+	 * @return True if the response hasn't been modified
+	 */
+	public static boolean isNotModified(@NonNull final AbstractRequest request, @Nullable final String entityTag,
+			final long lastModified)
+	{
+		final AsciiString ifNoneMatch = request.getHeader( IF_NONE_MATCH );
+		if ( !ifNoneMatch.isEmpty() )
+		{
+			return entityTag != null && matches( ifNoneMatch.toString(), entityTag );
+		}
+		final AsciiString ifModifiedSince = request.getHeader( IF_MODIFIED_SINCE );
+		if ( ifModifiedSince.isEmpty() || lastModified < 0 )
+		{
+			return false;
+		}
+		final long since = TimeUtil.parseHTTPTimeStamp( ifModifiedSince );
+		// HTTP dates only have a precision of one second
+		return since >= 0 && lastModified / 1000 <= since / 1000;
+	}
+
+	/**
+	 * Check if an entity tag is contained in an {@code If-None-Match} header, using the weak comparison function
+	 */
+	static boolean matches(final String ifNoneMatch, final String entityTag)
+	{
+		final String tag = stripWeakPrefix( entityTag );
+		for ( final String candidate : ifNoneMatch.split( "," ) )
+		{
+			final String trimmed = candidate.trim();
+			if ( trimmed.equals( "*" ) || stripWeakPrefix( trimmed ).equals( tag ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeakPrefix(final String entityTag)
+	{
+		return entityTag.startsWith( WEAK_PREFIX )
+				? entityTag.substring( WEAK_PREFIX.length() )
+				: entityTag;
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.cache;
+
+import javax.annotation.Nullable;
+import xyz.kvantum.server.api.request.AbstractRequest;
+
+/**
+ * Marks something that is able to describe the current version of its response without generating it, which allows
+ * conditional requests to be answered before the response is generated
+ */
+@FunctionalInterface public interface ValidatorProvider
+{
+
+	/**
+	 * Get the validator describing the response that would be generated for a request
+	 *
+	 * @param r Incoming request
+	 * @return Validator, or null if the response cannot be validated in advance
+	 */
+	@Nullable ResponseValidator getValidator(AbstractRequest r);
+
+}
@@ -44,6 +44,7 @@ import java.util.List;
 	public static boolean autoDetectViews = false;
 	public static boolean debug = true;
 	public static boolean gzip = true;
+	public static boolean deflate = false;
 	public static boolean enableSecurityManager = true;
 	public static boolean enableInputThread = true;
 	public static boolean exitOnStop = true;
@@ -74,6 +75,8 @@ import java.util.List;
 		public static String timeUnit = "MINUTES";
 		public static int limit = 1000;
 		public static long timeSpan = 1;
+		// Maximum amount of addresses that are tracked at once. The least recently seen addresses are dropped first
+		public static long maxAddresses = 100_000;
 	}
 
 	@ConfigSection(name = "internalAddons") public static class InternalAddons
@@ -88,6 +91,12 @@ import java.util.List;
 		public static String logFormat =
 				"&0[&c${applicationPrefix}&0]" + "&0[&c${logPrefix}&0]" + "&0[&c${thread}&0]" + "&0[&c${timeStamp}&0] "
 						+ "&r${message}";
+
+		// Access log entries are written in the background. Entries that don't fit in the queue are dropped, and
+		// the file is flushed when the buffer (in characters) is full or every flush interval (in milliseconds)
+		public static int accessLogQueueSize = 8192;
+		public static int accessLogBufferSize = 65536;
+		public static int accessLogFlushInterval = 1000;
 	}
 
 	@ConfigSection(name = "MemoryGuard") public static class MemoryGuard
@@ -100,6 +109,11 @@ import java.util.List;
 	{
 		public static boolean enableDb = true;
 		public static int sessionTimeout = 86400;
+
+		// Sessions are written to the database in batches. A session is at most this many seconds out of date in the
+		// database, and a queue of this many sessions is written right away
+		public static int flushInterval = 5;
+		public static int flushBatchSize = 500;
 	}
 
 	@ConfigSection(name = "Pools") public static class Pools
@@ -111,6 +125,14 @@ import java.util.List;
 		public static int httpsBossGroupThreads = 0;
 		public static int httpsWorkerGroupThreads = 0;
 
+		// Threads used to generate responses, away from the netty event loops (0 = cores * 2)
+		public static int requestWorkerThreads = 0;
+
+		// Threads used to publish high frequency events, such as finalized responses (0 = publish on the emitting
+		// thread). Lifecycle events are always published synchronously
+		public static int eventPublisherThreads = 1;
+		public static int eventPublisherQueueSize = 8192;
+
 		public static int gzipHandlers = 2;
 		public static int md5Handlers = 2;
 	}
@@ -122,6 +144,12 @@ import java.util.List;
 
 		public static List<String> applyTemplates = Collections.singletonList( "ALL" );
 
+		// Templates of at least this many characters are rendered straight into the response, rather than into a
+		// string first (-1 = never stream). This saves memory for large pages, but such responses are sent without
+		// a content length or an entity tag, so they can't be revalidated, and rendering errors can only abort the
+		// response, as the status has already been sent
+		public static int streamThreshold = -1;
+
 		public static boolean status(final TemplatingEngine engine)
 		{
 			return CoreConfig.TemplatingEngine.valueOf( Templates.engine ).equals( engine );
@@ -138,11 +166,25 @@ import java.util.List;
 
 	}
 
+	@ConfigSection(name = "http2") public static class HTTP2
+	{
+
+		// Negotiated through ALPN on the SSL port, and through prior knowledge on the plain port
+		public static boolean enable = true;
+		public static int maxConcurrentStreams = 100;
+
+	}
+
 	@ConfigSection(name = "buffer") public static class Buffer
 	{
 
 		public static int in = 100_000;
 		public static int out = 100_000;
+		// Files at least this large (in bytes) are transferred straight from disk, smaller files are served (and
+		// compressed) from the off-heap content cache
+		public static int fileTransferThreshold = 512 * 1024;
+		// Size of the chunks that streamed responses are sent in
+		public static int streamChunkSize = 16 * 1024;
 	}
 
 	@ConfigSection(name = "limits") public static class Limits
@@ -162,10 +204,13 @@ import java.util.List;
 		public static int cachedAccountIdsExpiry = 60 * 60 * 24;
 		public static int cachedAccountIdsMaxItems = 1000;
 		public static int cachedBodiesExpiry = 60 * 60;
-		public static int cachedBodiesMaxItems = 1000;
+		public static int cachedBodiesMaxBytes = 16 * 1024 * 1024; // 16MB
 		public static int cachedFilesExpiry = 60 * 60 * 24;
-		public static int cachedFilesMaxItems = 1000;
+		public static int cachedFilesMaxBytes = 16 * 1024 * 1024; // 16MB
+		public static int cachedContentExpiry = 60 * 60;
+		public static int cachedContentMaxBytes = 64 * 1024 * 1024; // 64MB
 		public static int cachedSessionsMaxItems = 1000;
+		public static int cachedTemplatesMaxItems = 1000;
 		public static int cachedQueryMinimumAccesses = 10;
 	}
 
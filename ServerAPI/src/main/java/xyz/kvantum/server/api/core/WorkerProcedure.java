@@ -21,6 +21,8 @@
  */
 package xyz.kvantum.server.api.core;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -172,6 +174,27 @@ import xyz.kvantum.server.api.views.RequestHandler;
 
 	}
 
+	/**
+	 * A string handler that is able to write its result to a {@link Writer}, rather than returning it as a whole. When
+	 * it is the last handler of the procedure, large responses are sent to the client while they are being generated
+	 */
+	public static abstract class StreamingStringHandler extends StringHandler
+	{
+
+		/**
+		 * Act on the content, and write the result
+		 *
+		 * @param requestHandler Request handler that generated the content
+		 * @param request Request that the content was generated for
+		 * @param in Content
+		 * @param out Writer that the result is written to. It is flushed, but not closed, by the caller
+		 * @throws IOException If the result could not be written
+		 */
+		public abstract void act(RequestHandler requestHandler, AbstractRequest request, String in, Writer out)
+				throws IOException;
+
+	}
+
 	/**
 	 * An instance containing the handlers from the WorkerProcedure, that are split into Byte & String Handlers (to make
 	 * them easier to use in the worker)
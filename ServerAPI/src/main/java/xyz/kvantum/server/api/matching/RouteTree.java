@@ -0,0 +1,212 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.matching;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.views.RequestHandler;
+
+/**
+ * Prefix tree over the leading static parts of {@link ViewPattern view patterns}, used to narrow down which {@link
+ * RequestHandler request handlers} have to be tested against a request. Every node keeps one branch per {@link
+ * HttpMethod}, and candidates are always tested in registration order, so the matched handler is the same one that a
+ * linear scan over all handlers would have found. Handlers without a {@link RequestHandler#getRoutingPattern()} are
+ * stored in the root, and are thus tested against every request
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" }) public final class RouteTree
+{
+
+	private final Node root = new Node();
+	private final Map<RequestHandler, Route> routes = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong( 0 );
+
+	/**
+	 * Add a request handler to the tree. It will be tested after all previously added handlers
+	 *
+	 * @param handler Handler to add
+	 */
+	public void add(@NonNull final RequestHandler handler)
+	{
+		final ViewPattern pattern = handler.getRoutingPattern();
+		final HttpMethod method;
+		Node node = root;
+		if ( pattern == null )
+		{
+			method = HttpMethod.ALL;
+		} else
+		{
+			method = handler.getRoutingMethod();
+			for ( final String part : pattern.getStaticPrefix() )
+			{
+				node = node.children.computeIfAbsent( part, key -> new Node() );
+			}
+		}
+		final Route route = new Route( handler, node, method, sequence.getAndIncrement() );
+		this.routes.put( handler, route );
+		node.getBranch( method ).add( route );
+	}
+
+	/**
+	 * Remove a request handler from the tree
+	 *
+	 * @param handler Handler to remove
+	 * @return True if the handler was removed, false if it wasn't in the tree
+	 */
+	public boolean remove(@NonNull final RequestHandler handler)
+	{
+		final Route route = this.routes.remove( handler );
+		if ( route == null )
+		{
+			return false;
+		}
+		route.node.getBranch( route.method ).remove( route );
+		return true;
+	}
+
+	/**
+	 * Remove all request handlers from the tree
+	 */
+	public void clear()
+	{
+		this.routes.clear();
+		this.root.children.clear();
+		this.root.branches.clear();
+	}
+
+	/**
+	 * Find the first registered handler that matches the request. Only handlers whose static prefix matches the
+	 * request path are tested, using {@link RequestHandler#matches(AbstractRequest)}
+	 *
+	 * @param request Request to match
+	 * @return Matching handler, or null if none matched
+	 */
+	@Nullable public RequestHandler match(@NonNull final AbstractRequest request)
+	{
+		final HttpMethod method = request.getQuery().getMethod();
+		final List<Route> candidates = new ArrayList<>();
+		Node node = root;
+		node.collect( method, candidates );
+
+		//
+		// The path is tokenized the same way that ViewPattern does it: the
+		// query is ignored, and tokens are separated by slashes, backslashes
+		// and the last dot of the path. Empty tokens and '#' are skipped
+		//
+		final String path = request.getQuery().getResource();
+		final int queryIndex = path.indexOf( '?' );
+		final int end = queryIndex == -1 ? path.length() : queryIndex;
+		final int lastDot = end == 0 ? -1 : path.lastIndexOf( '.', end - 1 );
+		final StringBuilder token = new StringBuilder();
+		for ( int i = 0; i <= end && !node.children.isEmpty(); i++ )
+		{
+			final char character = i == end ? '/' : path.charAt( i );
+			if ( character == '/' || character == '\\' || i == lastDot )
+			{
+				if ( token.length() == 0 )
+				{
+					continue;
+				}
+				if ( ( node = node.children.get( token.toString() ) ) == null )
+				{
+					break;
+				}
+				node.collect( method, candidates );
+				token.setLength( 0 );
+			} else if ( character != '#' )
+			{
+				//
+				// Static parts are compared using String#equalsIgnoreCase
+				//
+				token.append( Character.toLowerCase( Character.toUpperCase( character ) ) );
+			}
+		}
+
+		if ( candidates.size() > 1 )
+		{
+			candidates.sort( Route.REGISTRATION_ORDER );
+		}
+		for ( final Route route : candidates )
+		{
+			if ( route.handler.matches( request ) )
+			{
+				return route.handler;
+			}
+		}
+		return null; // Nullable
+	}
+
+	@RequiredArgsConstructor private static final class Route
+	{
+
+		private static final Comparator<Route> REGISTRATION_ORDER = Comparator.comparingLong( route -> route.order );
+
+		private final RequestHandler handler;
+		private final Node node;
+		private final HttpMethod method;
+		private final long order;
+	}
+
+	private static final class Node
+	{
+
+		private final Map<String, Node> children = new ConcurrentHashMap<>();
+		private final Map<HttpMethod, List<Route>> branches = new ConcurrentHashMap<>();
+
+		private List<Route> getBranch(final HttpMethod method)
+		{
+			return this.branches.computeIfAbsent( method, key -> new CopyOnWriteArrayList<>() );
+		}
+
+		private void collect(final HttpMethod method, final Collection<Route> candidates)
+		{
+			if ( this.branches.isEmpty() )
+			{
+				return;
+			}
+			final List<Route> all = this.branches.get( HttpMethod.ALL );
+			if ( all != null )
+			{
+				candidates.addAll( all );
+			}
+			if ( method != HttpMethod.ALL )
+			{
+				final List<Route> specific = this.branches.get( method );
+				if ( specific != null )
+				{
+					candidates.addAll( specific );
+				}
+			}
+		}
+	}
+
+}
@@ -55,6 +55,12 @@ import xyz.kvantum.server.api.util.Assert;
 	private final List<Part> parts = new ArrayList<>();
 	private final String raw;
 
+	//
+	// Compiled form of the parts, used when matching
+	//
+	private final Part[] compiledParts;
+	private final boolean[] strictSeparators;
+
 	/**
 	 * Generate a list of parts from the provided string
 	 *
@@ -120,10 +126,24 @@ import xyz.kvantum.server.api.util.Assert;
 				}
 			}
 		}
+
+		//
+		// A separator has to match the delimiter type if it is followed by
+		// a static part or a required variable
+		//
+		this.compiledParts = this.parts.toArray( new Part[ 0 ] );
+		this.strictSeparators = new boolean[ compiledParts.length ];
+		for ( int i = 0; i < compiledParts.length - 1; i++ )
+		{
+			final Part next = compiledParts[ i + 1 ];
+			this.strictSeparators[ i ] = next instanceof Static
+					|| ( next instanceof Variable && ( ( Variable ) next ).getType() == Variable.TYPE_REQUIRED );
+		}
 	}
 
 	/**
-	 * Test if a string matches the pattern
+	 * Test if a string matches the pattern. The string is matched in place, and a variable map is only created if
+	 * it matches
 	 *
 	 * @param in String to test for
 	 * @return A map containing the variables extracted from the string. If there was no match, the map will be null
@@ -132,145 +152,217 @@ import xyz.kvantum.server.api.util.Assert;
 	{
 		Assert.notNull( in );
 
-		final SmartString url;
-		if ( in.contains( "?" ) )
-		{
-			url = new SmartString( in.split( "\\?" )[ 0 ] );
-		} else
-		{
-			url = new SmartString( in );
-		}
-
-		url.replaceFirstIf( '/', SmartString.nil );
-		url.replaceLastIf( '/', SmartString.nil );
-
-		if ( url.count( '.' ) >= 2 )
-		{
-			url.replaceAllButLast( '.', '§' );
-		}
-
-		if ( parts.isEmpty() )
-		{
-			if ( url.toString().isEmpty() )
+		//
+		// The query is ignored, as is a single leading and trailing slash. The
+		// last dot of the path is a delimiter, any other dot is kept as '§'
+		//
+		final int queryIndex = in.indexOf( '?' );
+		final int length = queryIndex == -1 ? in.length() : queryIndex;
+		final int start = length > 0 && in.charAt( 0 ) == '/' ? 1 : 0;
+		final int end = length > start && in.charAt( length - 1 ) == '/' ? length - 1 : length;
+		final int lastDot = in.lastIndexOf( '.', length - 1 );
+
+		if ( compiledParts.length == 0 )
+		{
+			//
+			// '#' is only dropped if a slash was removed
+			//
+			final boolean trimmed = start != 0 || end != length;
+			for ( int i = start; i < end; i++ )
 			{
-				return new HashMap<>();
-			} else
-			{
-				return null; // Nullable
+				if ( !trimmed || in.charAt( i ) != '#' )
+				{
+					return null; // Nullable
+				}
 			}
+			return new HashMap<>();
 		}
 
-		final List<Integer> delimiterTypes = new ArrayList<>();
-		for ( final Character c : url )
+		if ( !matches( in, start, end, lastDot, null ) )
 		{
-			if ( c.equals( '.' ) )
-			{
-				delimiterTypes.add( 0 );
-			} else if ( c.equals( '/' ) )
-			{
-				delimiterTypes.add( 1 );
-			}
+			return null; // Nullable
 		}
+		final Map<String, String> variables = new HashMap<>();
+		matches( in, start, end, lastDot, variables );
+		return variables;
+	}
 
-		final Iterator<Integer> delimiterIterator = delimiterTypes.iterator();
+	/**
+	 * Match the path between start and end against the compiled parts
+	 *
+	 * @param variables Map that variables will be put into, if not null
+	 * @return True if the path matches
+	 */
+	private boolean matches(final String in, final int start, final int end, final int lastDot,
+			@Nullable final Map<String, String> variables)
+	{
+		int delimiterPosition = start;
+		int tokenPosition = start;
 		int currentDelimiter = -1;
-
-		final Map<String, String> variables = new HashMap<>();
-		final StringTokenizer stringTokenizer = new StringTokenizer( url.toString(), "\\/." );
 		Part lastPart = null;
 
-		int iterator = -1;
-
-		for ( final Part part : parts )
+		for ( int index = 0; index < compiledParts.length; index++ )
 		{
-			iterator++;
+			final Part part = compiledParts[ index ];
 
 			if ( part instanceof Split || part instanceof Dot )
 			{
-				if ( delimiterIterator.hasNext() )
+				currentDelimiter = -1;
+				while ( delimiterPosition < end && currentDelimiter == -1 )
 				{
-					currentDelimiter = delimiterIterator.next();
-				} else
-				{
-					currentDelimiter = -1;
+					currentDelimiter = getDelimiterType( in, delimiterPosition++, lastDot );
 				}
 				lastPart = part;
 
-				if ( ( iterator + 1 ) < parts.size() && ( ( parts.get( iterator + 1 ) instanceof Variable
-						&& ( ( ( Variable ) parts.get( iterator + 1 ) ).getType() ) == Variable.TYPE_REQUIRED ) || parts
-						.get( iterator + 1 ) instanceof Static ) )
+				if ( strictSeparators[ index ] )
 				{
 					if ( part instanceof Split && currentDelimiter != 1 )
 					{
-						return null; // Nullable
+						return false;
 					} else if ( part instanceof Dot && currentDelimiter != 0 )
 					{
-						return null; // Nullable
+						return false;
 					}
 				}
 				continue;
 			}
 
-			boolean has = stringTokenizer.hasMoreTokens();
-			String next = has ? stringTokenizer.nextToken() : "";
+			final long token = nextToken( in, tokenPosition, end, lastDot );
+			final boolean has = token != -1;
+			if ( has )
+			{
+				tokenPosition = ( int ) token;
+			}
 
 			if ( part instanceof Variable )
 			{
-				Variable v = ( Variable ) part;
+				final Variable variable = ( Variable ) part;
 
-				if ( v.getType() == Variable.TYPE_REQUIRED )
+				if ( variable.getType() == Variable.TYPE_REQUIRED )
 				{
 					if ( !has )
 					{
-						return null; // Nullable
+						return false;
 					}
 				} else if ( has )
 				{
 					if ( lastPart instanceof Split && currentDelimiter != 1 )
 					{
-						return null; // Nullable
+						return false;
 					} else if ( lastPart instanceof Dot && currentDelimiter != 0 )
 					{
-						return null; // Nullable
+						return false;
 					}
 				}
-			} else if ( part instanceof Static )
-			{
-				if ( !has )
-				{
-					return null; // Nullable
-				} else
-				{
-					if ( !next.equalsIgnoreCase( part.toString() ) )
-					{
-						return null; // Nullable
-					}
-				}
-			}
 
-			if ( part instanceof Variable )
-			{
-				final Variable variable = ( Variable ) part;
-				if ( next.isEmpty() )
+				if ( variables != null )
 				{
-					if ( variable.hasDefaultValue() )
+					if ( has )
+					{
+						variables.put( variable.getName(),
+								getToken( in, ( int ) ( token >>> 32 ), ( int ) token, lastDot ) );
+					} else if ( variable.hasDefaultValue() )
 					{
 						variables.put( variable.getName(), variable.getDefaultValue() );
 					}
-				} else
+				}
+			} else if ( part instanceof Static )
+			{
+				if ( !has || !( ( Static ) part ).matches( in, ( int ) ( token >>> 32 ), ( int ) token, lastDot ) )
 				{
-					variables.put( variable.getName(), next );
+					return false;
 				}
 			}
 
 			lastPart = part;
 		}
 
-		if ( stringTokenizer.hasMoreTokens() )
+		return nextToken( in, tokenPosition, end, lastDot ) == -1;
+	}
+
+	/**
+	 * Get the delimiter type of a character: 0 for the last dot, 1 for a slash and -1 for anything else
+	 */
+	private static int getDelimiterType(final String in, final int position, final int lastDot)
+	{
+		if ( position == lastDot )
 		{
-			return null; // Nullable
+			return 0;
 		}
-		return variables;
+		return in.charAt( position ) == '/' ? 1 : -1;
+	}
+
+	private static boolean isSeparator(final String in, final int position, final int lastDot)
+	{
+		final char character = in.charAt( position );
+		return character == '/' || character == '\\' || position == lastDot;
+	}
+
+	/**
+	 * Find the next token, skipping separators and tokens made up of nothing but '#'
+	 *
+	 * @return Token start in the upper, and token end in the lower 32 bits, or -1 if there are no more tokens
+	 */
+	private static long nextToken(final String in, final int from, final int end, final int lastDot)
+	{
+		int position = from;
+		while ( position < end )
+		{
+			while ( position < end && isSeparator( in, position, lastDot ) )
+			{
+				position++;
+			}
+			final int tokenStart = position;
+			boolean content = false;
+			while ( position < end && !isSeparator( in, position, lastDot ) )
+			{
+				content |= in.charAt( position++ ) != '#';
+			}
+			if ( content )
+			{
+				return ( ( long ) tokenStart << 32 ) | position;
+			}
+		}
+		return -1;
+	}
+
+	private static String getToken(final String in, final int start, final int end, final int lastDot)
+	{
+		final StringBuilder builder = new StringBuilder( end - start );
+		for ( int i = start; i < end; i++ )
+		{
+			final char character = in.charAt( i );
+			if ( character == '.' )
+			{
+				builder.append( '§' );
+			} else if ( character != '#' )
+			{
+				builder.append( character );
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Get the static parts that lead the pattern, up until its first variable. A path that matches the pattern will
+	 * always have these as its first (case insensitive) tokens, which is what {@link RouteTree} uses to index handlers
+	 *
+	 * @return Lower case static prefix, may be empty
+	 */
+	public List<String> getStaticPrefix()
+	{
+		final List<String> prefix = new ArrayList<>();
+		for ( final Part part : parts )
+		{
+			if ( part instanceof Variable )
+			{
+				break;
+			} else if ( part instanceof Static )
+			{
+				prefix.add( part.toString() );
+			}
+		}
+		return prefix;
 	}
 
 	@Override public String toString()
@@ -295,6 +387,29 @@ import xyz.kvantum.server.api.util.Assert;
 			this.string = string;
 		}
 
+		/**
+		 * Compare a token to the string, ignoring case, in the same way as {@link String#equalsIgnoreCase(String)}
+		 */
+		private boolean matches(final String in, final int start, final int end, final int lastDot)
+		{
+			int index = 0;
+			for ( int i = start; i < end; i++ )
+			{
+				final char character = in.charAt( i );
+				if ( character == '#' )
+				{
+					continue;
+				}
+				if ( index == string.length() || character == '.'
+						|| Character.toLowerCase( Character.toUpperCase( character ) ) != string.charAt( index ) )
+				{
+					return false;
+				}
+				index++;
+			}
+			return index == string.length();
+		}
+
 		@Override public String toString()
 		{
 			return string;
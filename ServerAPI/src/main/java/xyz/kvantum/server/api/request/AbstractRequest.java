@@ -82,6 +82,8 @@ import xyz.kvantum.server.api.util.VariableProvider;
 
 	@SuppressWarnings("ALL") public static final String INTERNAL_REDIRECT = "internalRedirect";
 	public static final String ALTERNATE_OUTCOME = "alternateOutcome";
+	public static final AsciiString HTTP_1_0 = AsciiString.of( "HTTP/1.0" );
+	public static final AsciiString HTTP_1_1 = AsciiString.of( "HTTP/1.1" );
 	@Getter private final Map<String, ProviderFactory<? extends VariableProvider>> models = new HashMap<>();
 	public Set<ResponseCookie> postponedCookies = new HashSet<>();
 	@Setter(AccessLevel.PROTECTED) @Getter private ProtocolType protocolType;
@@ -96,6 +98,10 @@ import xyz.kvantum.server.api.util.VariableProvider;
 	@Setter @Getter private boolean valid = true;
 	@Setter(AccessLevel.PROTECTED) private Authorization authorization;
 	@Getter @Setter private byte[] overloadBytes;
+	/**
+	 * The HTTP version that the request was sent with
+	 */
+	@NonNull @Getter @Setter private AsciiString httpVersion = HTTP_1_1;
 
 	public ITempFileManager getTempFileManager()
 	{
@@ -206,13 +212,19 @@ import xyz.kvantum.server.api.util.VariableProvider;
 	 */
 	public String buildLog()
 	{
-		String msg = Message.REQUEST_LOG.toString();
-		for ( final Object a : new CharSequence[] { socket.getAddress().toString(), getHeader( "User-Agent" ),
-				getHeader( "query" ), getHeader( "Host" ), this.query.buildLog() } )
+		final String format = Message.REQUEST_LOG.toString();
+		final StringBuilder builder = new StringBuilder( format.length() + 64 );
+		final CharSequence[] arguments = { socket.getAddress().toString(), getHeader( "User-Agent" ),
+				getHeader( "query" ), getHeader( "Host" ), this.query.buildLog() };
+		int index = 0;
+		int argument = 0;
+		int placeholder;
+		while ( argument < arguments.length && ( placeholder = format.indexOf( "{}", index ) ) != -1 )
 		{
-			msg = msg.replaceFirst( "\\{}", a.toString() );
+			builder.append( format, index, placeholder ).append( arguments[ argument++ ] );
+			index = placeholder + 2;
 		}
-		return msg;
+		return builder.append( format, index, format.length() ).toString();
 	}
 
 	/**
@@ -83,6 +83,20 @@ import xyz.kvantum.server.api.util.AsciiString;
 				request.getProtocolType(), matcher.group( RESOURCE ) ) ) );
 	}
 
+	/**
+	 * Set the query of a request, from a request line that has already been split into its parts
+	 *
+	 * @param request Request
+	 * @param method Request method
+	 * @param resource Requested resource, including any query string
+	 */
+	public static void compileQuery(@NonNull final AbstractRequest request, @NonNull final HttpMethod method,
+			@NonNull final String resource)
+	{
+		request.setQuery( AbstractRequest.QueryCache.getInstance().getQuery( new QueryParameters( method,
+				request.getProtocolType(), resource ) ) );
+	}
+
 	@Getter @RequiredArgsConstructor public static final class HeaderPair
 	{
 
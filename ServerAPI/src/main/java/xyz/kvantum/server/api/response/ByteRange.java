@@ -0,0 +1,185 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A single, inclusive, byte range as requested through the HTTP {@code Range} header
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7233">RFC 7233</a>
+ */
+@Getter @EqualsAndHashCode @RequiredArgsConstructor public final class ByteRange
+{
+
+	/**
+	 * The maximum amount of ranges that are accepted in a single request. Requests with more ranges than this are
+	 * served in full, to prevent clients from forcing the server into producing huge multipart responses
+	 */
+	public static final int MAX_RANGES = 16;
+
+	private static final String UNIT = "bytes=";
+
+	private final long start;
+	private final long end;
+
+	/**
+	 * Parse a {@code Range} header value for an entity of a given length. Overlapping and adjacent ranges are merged,
+	 * and ranges extending beyond the entity are truncated.
+	 *
+	 * @param header Header value
+	 * @param entityLength Length of the complete entity
+	 * @return The requested ranges, ordered by their start position. An empty list is returned if none of the ranges
+	 * are satisfiable. Null will be returned if the header is malformed, in which case it should be ignored.
+	 */
+	@Nullable public static List<ByteRange> parse(@Nullable final String header, final long entityLength)
+	{
+		if ( header == null || header.length() <= UNIT.length() || !header
+				.regionMatches( true, 0, UNIT, 0, UNIT.length() ) )
+		{
+			return null;
+		}
+		final String[] parts = header.substring( UNIT.length() ).split( "," );
+		if ( parts.length > MAX_RANGES )
+		{
+			return null;
+		}
+		final List<ByteRange> ranges = new ArrayList<>( parts.length );
+		try
+		{
+			for ( final String rawPart : parts )
+			{
+				final String part = rawPart.trim();
+				final int separator = part.indexOf( '-' );
+				if ( separator == -1 )
+				{
+					return null;
+				}
+				final String first = part.substring( 0, separator ).trim();
+				final String last = part.substring( separator + 1 ).trim();
+				long start, end;
+				if ( first.isEmpty() )
+				{
+					//
+					// Suffix range: the last n bytes of the entity
+					//
+					final long suffix = Long.parseLong( last );
+					if ( suffix < 0 )
+					{
+						return null;
+					}
+					if ( suffix == 0 || entityLength == 0 )
+					{
+						continue;
+					}
+					start = Math.max( 0, entityLength - suffix );
+					end = entityLength - 1;
+				} else
+				{
+					start = Long.parseLong( first );
+					end = last.isEmpty()
+							? entityLength - 1
+							: Long.parseLong( last );
+					if ( start < 0 || end < start )
+					{
+						return null;
+					}
+					if ( start >= entityLength )
+					{
+						continue;
+					}
+					end = Math.min( end, entityLength - 1 );
+				}
+				ranges.add( new ByteRange( start, end ) );
+			}
+		} catch ( final NumberFormatException e )
+		{
+			return null;
+		}
+		return merge( ranges );
+	}
+
+	private static List<ByteRange> merge(final List<ByteRange> ranges)
+	{
+		if ( ranges.size() < 2 )
+		{
+			return ranges;
+		}
+		ranges.sort( Comparator.comparingLong( ByteRange::getStart ) );
+		final List<ByteRange> merged = new ArrayList<>( ranges.size() );
+		ByteRange current = ranges.get( 0 );
+		for ( int i = 1; i < ranges.size(); i++ )
+		{
+			final ByteRange next = ranges.get( i );
+			if ( next.start <= current.end + 1 )
+			{
+				current = new ByteRange( current.start, Math.max( current.end, next.end ) );
+			} else
+			{
+				merged.add( current );
+				current = next;
+			}
+		}
+		merged.add( current );
+		return Collections.unmodifiableList( merged );
+	}
+
+	/**
+	 * Get the amount of bytes covered by this range
+	 *
+	 * @return Range length
+	 */
+	public long length()
+	{
+		return this.end - this.start + 1;
+	}
+
+	/**
+	 * Create a {@code Content-Range} header value for this range
+	 *
+	 * @param entityLength Length of the complete entity
+	 * @return Header value
+	 */
+	public String toContentRange(final long entityLength)
+	{
+		return "bytes " + this.start + "-" + this.end + "/" + entityLength;
+	}
+
+	/**
+	 * Create a {@code Content-Range} header value for a response to an unsatisfiable range request
+	 *
+	 * @param entityLength Length of the complete entity
+	 * @return Header value
+	 */
+	public static String unsatisfiable(final long entityLength)
+	{
+		return "bytes */" + entityLength;
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import java.util.Collection;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import xyz.kvantum.server.api.util.AsciiString;
+
+/**
+ * Content codings that responses may be compressed with
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4">RFC 7231, Section 5.3.4</a>
+ */
+public enum ContentEncoding
+{
+	GZIP( "gzip" ),
+	DEFLATE( "deflate" );
+
+	@Getter private final AsciiString name;
+
+	ContentEncoding(final String name)
+	{
+		this.name = AsciiString.of( name );
+	}
+
+	/**
+	 * Select the content coding preferred by the client, out of the available codings. Codings with a higher quality
+	 * value are preferred, and the order of the available codings breaks ties.
+	 *
+	 * @param acceptEncoding Accept-Encoding header value
+	 * @param available Available codings, in order of preference
+	 * @return Selected coding, or null if the response should not be encoded
+	 */
+	@Nullable public static ContentEncoding select(@NonNull final CharSequence acceptEncoding,
+			@NonNull final Collection<ContentEncoding> available)
+	{
+		if ( acceptEncoding.length() == 0 || available.isEmpty() )
+		{
+			return null;
+		}
+		ContentEncoding selected = null;
+		float selectedQuality = 0;
+		for ( final ContentEncoding encoding : available )
+		{
+			final float quality = getQuality( acceptEncoding.toString(), encoding.getName().toString() );
+			if ( quality > selectedQuality )
+			{
+				selected = encoding;
+				selectedQuality = quality;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Get the quality value that a header assigns to a coding, either explicitly or through the wildcard
+	 */
+	private static float getQuality(final String acceptEncoding, final String coding)
+	{
+		float wildcard = 0;
+		for ( final String part : acceptEncoding.split( "," ) )
+		{
+			final int parameters = part.indexOf( ';' );
+			final String name = ( parameters == -1
+					? part
+					: part.substring( 0, parameters ) ).trim();
+			final float quality = parameters == -1
+					? 1
+					: parseQuality( part.substring( parameters + 1 ) );
+			if ( name.equalsIgnoreCase( coding ) )
+			{
+				return quality;
+			} else if ( name.equals( "*" ) )
+			{
+				wildcard = quality;
+			}
+		}
+		return wildcard;
+	}
+
+	private static float parseQuality(final String parameters)
+	{
+		for ( final String parameter : parameters.split( ";" ) )
+		{
+			final String trimmed = parameter.trim();
+			if ( trimmed.startsWith( "q=" ) || trimmed.startsWith( "Q=" ) )
+			{
+				try
+				{
+					return Float.parseFloat( trimmed.substring( 2 ) );
+				} catch ( final NumberFormatException e )
+				{
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+}
@@ -32,8 +32,6 @@ import xyz.kvantum.server.api.util.TimeUtil;
 @Getter @RequiredArgsConstructor @Builder public final class FinalizedResponse
 {
 
-	private static final String LOG_FORMAT = "%h %l %u [%t] \"%r\" %>s %b";
-
 	@NonNull private final String address;
 	@Nullable private final AbstractRequest.Authorization authorization;
 	private final long timeFinished;
@@ -43,10 +41,24 @@ import xyz.kvantum.server.api.util.TimeUtil;
 
 	public String toLogString()
 	{
-		return LOG_FORMAT.replace( "%h", this.address ).replace( "%l", "-" )
-				.replace( "%u", authorization != null ? authorization.getUsername() : "-" )
-				.replace( "%t", TimeUtil.getAccessLogTimeStamp( this.timeFinished ) )
-				.replace( "%r", query.getMethod().name() + " " + query.getResource() + " HTTP/1.1" )
-				.replace( "%>s", this.status.substring( 0, 3 ) ).replace( "%b", String.valueOf( this.length ) );
+		final StringBuilder builder = new StringBuilder( 128 );
+		this.appendLogString( builder );
+		return builder.toString();
+	}
+
+	/**
+	 * Append the response to a builder, in the common log format: {@code %h %l %u [%t] "%r" %>s %b}
+	 *
+	 * @param builder Builder to append to
+	 */
+	public void appendLogString(@NonNull final StringBuilder builder)
+	{
+		final CharSequence username = authorization != null && authorization.getUsername() != null
+				? authorization.getUsername()
+				: "-";
+		builder.append( this.address ).append( " - " ).append( username ).append( " [" );
+		TimeUtil.appendAccessLogTimeStamp( builder, this.timeFinished );
+		builder.append( "] \"" ).append( query.getMethod().name() ).append( ' ' ).append( query.getResource() )
+				.append( " HTTP/1.1\" " ).append( this.status, 0, 3 ).append( ' ' ).append( this.length );
 	}
 }
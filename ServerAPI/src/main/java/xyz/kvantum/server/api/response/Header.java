@@ -26,7 +26,9 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 import java.util.Optional;
 import lombok.Getter;
 import lombok.NonNull;
@@ -74,6 +76,7 @@ import xyz.kvantum.server.api.util.TimeUtil;
 	// 3xx Redirection
 	//
 	public static final AsciiString STATUS_MOVED_PERMANENTLY = AsciiString.of( "301 Moved Permanently" );
+	public static final AsciiString STATUS_NOT_MODIFIED = AsciiString.of( "304 Not Modified" );
 	public static final AsciiString STATUS_TEMPORARY_REDIRECT = AsciiString.of( "307 Temporary Redirect" );
 
 	//
@@ -88,6 +91,8 @@ import xyz.kvantum.server.api.util.TimeUtil;
 	public static final AsciiString STATUS_PAYLOAD_TOO_LARGE = AsciiString.of( "413 Payload Too Large" );
 	public static final AsciiString STATUS_ENTITY_TOO_LARGE = AsciiString.of( "413 Entity Too Large" );
 	public static final AsciiString STATUS_REQUEST_TIMEOUT = AsciiString.of( "408 Request Timeout" );
+	public static final AsciiString STATUS_LENGTH_REQUIRED = AsciiString.of( "411 Length Required" );
+	public static final AsciiString STATUS_RANGE_NOT_SATISFIABLE = AsciiString.of( "416 Range Not Satisfiable" );
 	public static final AsciiString STATUS_TOO_MANY_REQUESTS = AsciiString.of( "429 Too Many Requests" );
 
 	//
@@ -96,6 +101,7 @@ import xyz.kvantum.server.api.util.TimeUtil;
 	public static final AsciiString STATUS_HTTP_VERSION_NOT_SUPPORTED = AsciiString
 			.of( "505 HTTP Version Not Supported" );
 	public static final AsciiString STATUS_INTERNAL_ERROR = AsciiString.of( "500 Internal Server Error" );
+	public static final AsciiString STATUS_NOT_IMPLEMENTED = AsciiString.of( "501 Not Implemented" );
 
 	public static final AsciiString ALLOW_ALL = AsciiString.of( "*" );
 
@@ -206,6 +212,14 @@ import xyz.kvantum.server.api.util.TimeUtil;
 	 * The length of the response body in octets (8-bit bytes)
 	 */
 	public static final HeaderOption HEADER_CONTENT_LENGTH = HeaderOption.create( "Content-Length" );
+	/**
+	 * Request headers that were used to select the representation of the response
+	 */
+	public static final HeaderOption HEADER_VARY = HeaderOption.create( "Vary" );
+	/**
+	 * The encoding used to transfer the message body, such as "chunked"
+	 */
+	public static final HeaderOption HEADER_TRANSFER_ENCODING = HeaderOption.create( "Transfer-Encoding" );
 	/**
 	 * Implementation-specific fields that may have various effects anywhere along the request- response chain
 	 */
@@ -416,6 +430,18 @@ import xyz.kvantum.server.api.util.TimeUtil;
 		this.setCookie( responseCookie );
 	}
 
+	/**
+	 * Remove all stored values for a header key
+	 *
+	 * @param key Header key
+	 * @return Instance
+	 */
+	public Header remove(@NonNull final HeaderOption key)
+	{
+		this.headers.removeAll( key );
+		return this;
+	}
+
 	/**
 	 * Clear all stored headers and return this instance
 	 */
@@ -444,4 +470,27 @@ import xyz.kvantum.server.api.util.TimeUtil;
 	{
 		return MultimapBuilder.ListMultimapBuilder.hashKeys( headers.size() ).arrayListValues().build( headers );
 	}
+
+	/**
+	 * Get a read-only view of the stored header pairs. Unlike {@link #getHeaders()}, this does not copy the
+	 * internal map, and is meant for serializing the header
+	 *
+	 * @return Read-only view of the header pairs
+	 */
+	public Collection<Map.Entry<HeaderOption, AsciiString>> entries()
+	{
+		return Collections.unmodifiableCollection( this.headers.entries() );
+	}
+
+	/**
+	 * Create an independent copy of this header, which can be modified without affecting the original
+	 *
+	 * @return Header copy
+	 */
+	public Header copy()
+	{
+		final Header header = new Header( this.status, this.format );
+		header.headers.putAll( this.headers );
+		return header;
+	}
 }
@@ -22,6 +22,7 @@
 package xyz.kvantum.server.api.response;
 
 import lombok.Getter;
+import xyz.kvantum.files.Path;
 import xyz.kvantum.server.api.util.Assert;
 import xyz.kvantum.server.api.util.TimeUtil;
 import xyz.kvantum.server.api.views.RequestHandler;
@@ -39,6 +40,8 @@ import xyz.kvantum.server.api.views.RequestHandler;
 	private RequestHandler parent;
 	@Getter private boolean text;
 	@Getter private byte[] bytes;
+	@Getter private Path file;
+	@Getter private StreamingContent stream;
 
 	/**
 	 * Constructor
@@ -67,6 +70,8 @@ import xyz.kvantum.server.api.views.RequestHandler;
 		this.parent = handle.parent;
 		this.text = handle.text;
 		this.bytes = handle.bytes;
+		this.file = handle.file;
+		this.stream = handle.stream;
 	}
 
 	/**
@@ -78,6 +83,38 @@ import xyz.kvantum.server.api.views.RequestHandler;
 	{
 		this.bytes = Assert.notNull( bytes );
 		this.text = false;
+		this.file = null;
+		this.stream = null;
+	}
+
+	/**
+	 * Serve a file directly from the file system. Large files will be transferred to the client without being loaded
+	 * into memory, whereas small files are served from the off-heap content cache of the server. The content will not
+	 * be passed through any string handlers.
+	 *
+	 * @param file File to send to the client
+	 */
+	public void setFile(final Path file)
+	{
+		this.file = Assert.notNull( file );
+		this.bytes = new byte[ 0 ];
+		this.text = false;
+		this.stream = null;
+	}
+
+	/**
+	 * Stream the content to the client while it is being generated, rather than holding it in memory. Responses to
+	 * keep-alive connections are sent using chunked transfer encoding. The content will not be passed through any
+	 * string handlers, and the response will not be cached.
+	 *
+	 * @param stream Content to send to the client
+	 */
+	public void setStream(final StreamingContent stream)
+	{
+		this.stream = Assert.notNull( stream );
+		this.bytes = new byte[ 0 ];
+		this.text = false;
+		this.file = null;
 	}
 
 	/**
@@ -101,6 +138,8 @@ import xyz.kvantum.server.api.views.RequestHandler;
 	{
 		this.content = Assert.notNull( content );
 		this.text = true;
+		this.file = null;
+		this.stream = null;
 		return this;
 	}
 
@@ -21,6 +21,9 @@
  */
 package xyz.kvantum.server.api.response;
 
+import javax.annotation.Nullable;
+import xyz.kvantum.files.Path;
+
 public interface ResponseBody extends HeaderProvider
 {
 
@@ -32,4 +35,24 @@ public interface ResponseBody extends HeaderProvider
 
 	boolean isText();
 
+	/**
+	 * Get the file that should be transferred as the response body, in case the body isn't held in memory
+	 *
+	 * @return File, or null if the body is held in memory
+	 */
+	@Nullable default Path getFile()
+	{
+		return null;
+	}
+
+	/**
+	 * Get the content that should be streamed to the client, in case the body isn't held in memory
+	 *
+	 * @return Streamed content, or null if the body is held in memory
+	 */
+	@Nullable default StreamingContent getStream()
+	{
+		return null;
+	}
+
 }
@@ -0,0 +1,45 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response content that is written to the client incrementally, rather than being held in memory as a whole. The
+ * content is written once the response header has been sent.
+ *
+ * @see Response#setStream(StreamingContent)
+ */
+@FunctionalInterface public interface StreamingContent
+{
+
+	/**
+	 * Write the content. Data is sent to the client in chunks while it is being written, and writing blocks while the
+	 * client isn't able to keep up.
+	 *
+	 * @param outputStream Stream sending the data to the client. It will be closed once this method returns.
+	 * @throws IOException If the content could not be written, in which case the connection will be closed
+	 */
+	void writeTo(OutputStream outputStream) throws IOException;
+
+}
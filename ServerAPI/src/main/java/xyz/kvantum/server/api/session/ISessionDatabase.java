@@ -21,6 +21,7 @@
  */
 package xyz.kvantum.server.api.session;
 
+import java.util.Collection;
 import javax.annotation.Nullable;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.config.Message;
@@ -75,6 +76,19 @@ public interface ISessionDatabase
 	 */
 	void storeSession(ISession session);
 
+	/**
+	 * Store a batch of sessions in the database. Sessions that don't exist are inserted, and the last active time of
+	 * those that do is updated. Implementations should write the batch in a single transaction, and throw if it
+	 * could not be written, so that the sessions are written again later.
+	 *
+	 * @param sessions Sessions to store
+	 * @throws Exception If the batch could not be written
+	 */
+	default void storeSessions(final Collection<ISession> sessions) throws Exception
+	{
+		sessions.forEach( this::storeSession );
+	}
+
 	/**
 	 * Update a session in the database
 	 *
@@ -24,11 +24,12 @@ package xyz.kvantum.server.api.session;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import lombok.AllArgsConstructor;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.Nullable;
 import lombok.NonNull;
-import lombok.Synchronized;
 import lombok.val;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.config.Message;
@@ -42,9 +43,12 @@ import xyz.kvantum.server.api.util.Assert;
 import xyz.kvantum.server.api.util.ProviderFactory;
 
 /**
- * Manager for {@link ISession sessions}
+ * Manager for {@link ISession sessions}. Sessions are looked up and created without any global locking. Loading a
+ * session from the {@link ISessionDatabase} is guarded by a lock striped on the session ID, so that concurrent requests
+ * for the same session share a single instance. Sessions are written to the database in batches, by a
+ * {@link SessionWriteBehind}, rather than on every creation and eviction.
  */
-@SuppressWarnings({ "WeakerAccess", "unused" }) @AllArgsConstructor public final class SessionManager
+@SuppressWarnings({ "WeakerAccess", "unused" }) public final class SessionManager
 		implements ProviderFactory<ISession>
 {
 
@@ -54,8 +58,20 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 	private final ISessionCreator sessionCreator;
 	private final ISessionDatabase sessionDatabase;
 	private final Cache<AsciiString, ISession> sessions = CacheBuilder.newBuilder()
+			.concurrencyLevel( Runtime.getRuntime().availableProcessors() )
 			.maximumSize( CoreConfig.Cache.cachedSessionsMaxItems ).removalListener( this::saveSession )
 			.expireAfterAccess( CoreConfig.Sessions.sessionTimeout, TimeUnit.SECONDS ).build();
+	private final Striped<Lock> loadLocks = Striped.lock( Runtime.getRuntime().availableProcessors() * 4 );
+	private final SessionWriteBehind writeBehind;
+
+	public SessionManager(@NonNull final ISessionCreator sessionCreator,
+			@NonNull final ISessionDatabase sessionDatabase)
+	{
+		this.sessionCreator = sessionCreator;
+		this.sessionDatabase = sessionDatabase;
+		this.writeBehind = new SessionWriteBehind( sessionDatabase, CoreConfig.Sessions.flushInterval,
+				CoreConfig.Sessions.flushBatchSize );
+	}
 
 	private ISession createSession(@NonNull final AbstractRequest r)
 	{
@@ -75,7 +91,7 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 	{
 		if ( !notification.getValue().isDeleted() )
 		{
-			this.sessionDatabase.updateSession( notification.getKey() );
+			this.writeBehind.enqueue( notification.getKey(), notification.getValue() );
 		}
 	}
 
@@ -94,11 +110,60 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 		r.getCookies().put( SESSION_PASS, new Cookie( SESSION_PASS, session.getSessionKey() ) );
 	}
 
-	@Synchronized private ISession createSession(@NonNull final AsciiString sessionID)
+	private ISession createSession(@NonNull final AsciiString sessionID)
 	{
+		//
+		// The session ID is random, so nothing else can be creating the same session
+		//
 		final ISession session = sessionCreator.createSession().set( "id", sessionID );
 		this.sessions.put( sessionID, session );
-		this.sessionDatabase.storeSession( session );
+		this.writeBehind.enqueue( sessionID, session );
+		return session;
+	}
+
+	/**
+	 * Load a session that isn't cached from the database
+	 *
+	 * @param sessionID Session ID
+	 * @return The loaded session, or null if there is no valid session with the ID
+	 */
+	@Nullable private ISession loadSession(@NonNull final AsciiString sessionID)
+	{
+		final ISession session;
+		final Lock lock = this.loadLocks.get( sessionID );
+		lock.lock();
+		try
+		{
+			//
+			// Another request may have loaded the session while this one was waiting
+			//
+			final ISession loaded = this.sessions.getIfPresent( sessionID );
+			if ( loaded != null )
+			{
+				return loaded;
+			}
+			//
+			// The session may have been evicted before it was written to the database
+			//
+			final ISession queued = this.writeBehind.getPending( sessionID );
+			if ( queued != null && !queued.isDeleted() )
+			{
+				this.sessions.put( sessionID, queued );
+				return queued;
+			}
+			final SessionLoad load = sessionDatabase.isValid( sessionID );
+			if ( load == null )
+			{
+				return null; // Nullable
+			}
+			session = sessionCreator.createSession().set( "id", sessionID );
+			session.setSessionKey( AsciiString.of( load.getSessionKey(), false ) );
+			this.sessions.put( sessionID, session );
+		} finally
+		{
+			lock.unlock();
+		}
+		this.writeBehind.enqueue( sessionID, session );
 		return session;
 	}
 
@@ -113,7 +178,7 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 	 * @param r Request to query from
 	 * @return (Optional) session
 	 */
-	@Synchronized public Optional<ISession> getSession(@NonNull final AbstractRequest r)
+	public Optional<ISession> getSession(@NonNull final AbstractRequest r)
 	{
 		Assert.isValid( r );
 
@@ -163,6 +228,7 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 					}
 					session.setDeleted();
 					this.sessions.invalidate( sessionCookie );
+					this.writeBehind.discard( sessionCookie );
 					this.sessionDatabase.deleteSession( sessionCookie );
 					session = null;
 				}
@@ -171,12 +237,10 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 				//
 				// If it cannot be found, try to load it from the database
 				//
-				final SessionLoad load = sessionDatabase.isValid( sessionCookie );
-				if ( load != null )
+				final ISession loaded = this.loadSession( sessionCookie );
+				if ( loaded != null )
 				{
-					session = createSession( sessionCookie );
-					session.setSessionKey( AsciiString.of( load.getSessionKey(), false ) );
-					return Optional.of( session );
+					return Optional.of( loaded );
 				} else
 				{
 					// Session isn't valid, remove old cookie
@@ -196,6 +260,7 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 				}
 				session.setDeleted();
 				this.sessions.invalidate( sessionCookie );
+				this.writeBehind.discard( sessionCookie );
 				this.sessionDatabase.deleteSession( sessionCookie );
 				session = null;
 			}
@@ -234,6 +299,21 @@ import xyz.kvantum.server.api.util.ProviderFactory;
 		session.ifPresent( iSession -> iSession.set( "last_active", System.currentTimeMillis() ) );
 	}
 
+	/**
+	 * Write all cached sessions to the database and stop the background writer. Should be called once, when the
+	 * server is shutting down.
+	 */
+	public void close()
+	{
+		this.sessions.asMap().forEach( (id, session) -> {
+			if ( !session.isDeleted() )
+			{
+				this.writeBehind.enqueue( id, session );
+			}
+		} );
+		this.writeBehind.close();
+	}
+
 	@Override public Optional<ISession> get(final AbstractRequest r)
 	{
 		return getSession( r );
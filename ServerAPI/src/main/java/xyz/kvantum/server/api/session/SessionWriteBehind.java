@@ -0,0 +1,171 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.session;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import xyz.kvantum.server.api.exceptions.KvantumException;
+import xyz.kvantum.server.api.util.AsciiString;
+
+/**
+ * Queue of {@link ISession sessions} that have yet to be written to the {@link ISessionDatabase}. Sessions are written
+ * in batches, using {@link ISessionDatabase#storeSessions(Collection)}, every flush interval and whenever the queue
+ * reaches the batch size. A session is therefore never more than one flush interval out of date in the database.
+ */
+@SuppressWarnings("WeakerAccess") public final class SessionWriteBehind
+{
+
+	private final ISessionDatabase sessionDatabase;
+	private final int batchSize;
+	private final Map<AsciiString, ISession> pending = new ConcurrentHashMap<>();
+	private final AtomicBoolean flushQueued = new AtomicBoolean( false );
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * @param sessionDatabase Database that sessions are written to
+	 * @param flushInterval Maximum amount of seconds that a session may stay queued
+	 * @param batchSize Amount of queued sessions that triggers an early flush
+	 */
+	public SessionWriteBehind(@NonNull final ISessionDatabase sessionDatabase, final int flushInterval,
+			final int batchSize)
+	{
+		this.sessionDatabase = sessionDatabase;
+		this.batchSize = Math.max( 1, batchSize );
+		this.executor = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat( "session-writer" ).setDaemon( true ).build() );
+		final int interval = Math.max( 1, flushInterval );
+		this.executor.scheduleWithFixedDelay( this::flush, interval, interval, TimeUnit.SECONDS );
+	}
+
+	/**
+	 * Queue a session to be written to the database. Queueing a session that is already queued does nothing.
+	 *
+	 * @param sessionID Session ID
+	 * @param session Session to write
+	 */
+	public void enqueue(@NonNull final AsciiString sessionID, @NonNull final ISession session)
+	{
+		this.pending.put( sessionID, session );
+		if ( this.pending.size() >= this.batchSize && this.flushQueued.compareAndSet( false, true ) )
+		{
+			try
+			{
+				this.executor.execute( this::flush );
+			} catch ( final RejectedExecutionException e )
+			{
+				//
+				// Shutting down, the final flush will pick the session up
+				//
+				this.flushQueued.set( false );
+			}
+		}
+	}
+
+	/**
+	 * Get a session that is queued, but not yet written to the database
+	 *
+	 * @param sessionID Session ID
+	 * @return The queued session, or null if it isn't queued
+	 */
+	@Nullable public ISession getPending(@NonNull final AsciiString sessionID)
+	{
+		return this.pending.get( sessionID );
+	}
+
+	/**
+	 * Remove a session from the queue, without writing it. Used when sessions are deleted.
+	 *
+	 * @param sessionID Session ID
+	 */
+	public void discard(@NonNull final AsciiString sessionID)
+	{
+		this.pending.remove( sessionID );
+	}
+
+	/**
+	 * Write all queued sessions to the database, as a single batch. Sessions are only removed from the queue once the
+	 * batch has been written, so that they are written again by the next flush if the write fails
+	 */
+	public synchronized void flush()
+	{
+		this.flushQueued.set( false );
+		if ( this.pending.isEmpty() )
+		{
+			return;
+		}
+		final Map<AsciiString, ISession> batch = new HashMap<>( this.pending.size() );
+		final Iterator<Map.Entry<AsciiString, ISession>> iterator = this.pending.entrySet().iterator();
+		while ( iterator.hasNext() )
+		{
+			final Map.Entry<AsciiString, ISession> entry = iterator.next();
+			if ( entry.getValue().isDeleted() )
+			{
+				iterator.remove();
+			} else
+			{
+				batch.put( entry.getKey(), entry.getValue() );
+			}
+		}
+		if ( batch.isEmpty() )
+		{
+			return;
+		}
+		try
+		{
+			this.sessionDatabase.storeSessions( batch.values() );
+		} catch ( final Exception e )
+		{
+			new KvantumException( "Failed to write " + batch.size() + " sessions, retrying on the next flush", e )
+					.printStackTrace();
+			return;
+		}
+		batch.forEach( this.pending::remove );
+	}
+
+	/**
+	 * Stop the background writer and write everything that is still queued
+	 */
+	public void close()
+	{
+		this.executor.shutdown();
+		try
+		{
+			this.executor.awaitTermination( 10, TimeUnit.SECONDS );
+		} catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		this.flush();
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.template;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import xyz.kvantum.server.api.config.CoreConfig;
+import xyz.kvantum.server.api.views.RequestHandler;
+
+/**
+ * Compiled templates of a template engine, per request handler and source. Handlers that serve several files keep one
+ * template per file, and a file that has changed is compiled again. Requests for a template that is being compiled
+ * wait for that compilation, rather than compiling it again.
+ *
+ * @param <T> Compiled template type
+ */
+public final class TemplateCache<T>
+{
+
+	private final Cache<TemplateKey, T> templates = CacheBuilder.newBuilder()
+			.maximumSize( CoreConfig.Cache.cachedTemplatesMaxItems ).build();
+
+	/**
+	 * Get the compiled version of a template generated by a request handler, compiling it if it hasn't been compiled
+	 * yet
+	 *
+	 * @param requestHandler Request handler that generated the template
+	 * @param source Template source
+	 * @param compiler Function that compiles the source
+	 * @return Compiled template
+	 */
+	public T get(@NonNull final RequestHandler requestHandler, @NonNull final String source,
+			@NonNull final Function<String, T> compiler)
+	{
+		try
+		{
+			return this.templates.get( new TemplateKey( requestHandler, source ), () -> compiler.apply( source ) );
+		} catch ( final ExecutionException | UncheckedExecutionException e )
+		{
+			Throwables.throwIfUnchecked( e.getCause() );
+			throw new IllegalStateException( "Failed to compile template", e.getCause() );
+		}
+	}
+
+	@EqualsAndHashCode @RequiredArgsConstructor private static final class TemplateKey
+	{
+
+		private final RequestHandler requestHandler;
+		private final String source;
+
+	}
+
+}
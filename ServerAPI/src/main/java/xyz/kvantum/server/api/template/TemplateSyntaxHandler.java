@@ -21,6 +21,8 @@
  */
 package xyz.kvantum.server.api.template;
 
+import java.io.IOException;
+import java.io.Writer;
 import lombok.RequiredArgsConstructor;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.config.Message;
@@ -29,35 +31,70 @@ import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.util.IgnoreSyntax;
 import xyz.kvantum.server.api.views.RequestHandler;
 
-@RequiredArgsConstructor public abstract class TemplateSyntaxHandler extends WorkerProcedure.StringHandler
+@RequiredArgsConstructor public abstract class TemplateSyntaxHandler extends WorkerProcedure.StreamingStringHandler
 {
 
 	private final TemplateHandler templateHandler;
 
 	@Override public final String act(RequestHandler requestHandler, AbstractRequest request, String in)
 	{
-		String out = in;
-		if ( !( requestHandler instanceof IgnoreSyntax ) )
+		if ( this.shouldApply( requestHandler, request ) )
 		{
-			if ( !CoreConfig.Templates.applyTemplates.contains( "ALL" ) && !CoreConfig.Templates.applyTemplates
-					.contains( requestHandler.getName() ) )
-			{
-				if ( CoreConfig.debug )
-				{
-					Message.TEMPLATING_ENGINE_DEBUG_NOT_ENABLED.log( requestHandler.getName() );
-				}
-			} else
+			return this.handle( requestHandler, request, in );
+		}
+		return in;
+	}
+
+	@Override public final void act(RequestHandler requestHandler, AbstractRequest request, String in, Writer out)
+			throws IOException
+	{
+		if ( this.shouldApply( requestHandler, request ) )
+		{
+			this.handle( requestHandler, request, in, out );
+		} else
+		{
+			out.write( in );
+		}
+	}
+
+	private boolean shouldApply(final RequestHandler requestHandler, final AbstractRequest request)
+	{
+		if ( requestHandler instanceof IgnoreSyntax )
+		{
+			return false;
+		}
+		if ( !CoreConfig.Templates.applyTemplates.contains( "ALL" ) && !CoreConfig.Templates.applyTemplates
+				.contains( requestHandler.getName() ) )
+		{
+			if ( CoreConfig.debug )
 			{
-				if ( CoreConfig.debug )
-				{
-					Message.TEMPLATING_ENGINE_REACTING.log( templateHandler.getEngineName(), request );
-				}
-				out = this.handle( requestHandler, request, in );
+				Message.TEMPLATING_ENGINE_DEBUG_NOT_ENABLED.log( requestHandler.getName() );
 			}
+			return false;
 		}
-		return out;
+		if ( CoreConfig.debug )
+		{
+			Message.TEMPLATING_ENGINE_REACTING.log( templateHandler.getEngineName(), request );
+		}
+		return true;
 	}
 
 	protected abstract String handle(RequestHandler requestHandler, AbstractRequest request, String in);
 
+	/**
+	 * Render the template into a writer. Engines that are able to render incrementally should override this, the
+	 * default implementation writes the result of {@link #handle(RequestHandler, AbstractRequest, String)}
+	 *
+	 * @param requestHandler Request handler that generated the template
+	 * @param request Request that the template is rendered for
+	 * @param in Template
+	 * @param out Writer that the rendered template is written to
+	 * @throws IOException If the template could not be written
+	 */
+	protected void handle(RequestHandler requestHandler, AbstractRequest request, String in, Writer out)
+			throws IOException
+	{
+		out.write( this.handle( requestHandler, request, in ) );
+	}
+
 }
@@ -21,7 +21,6 @@
  */
 package xyz.kvantum.server.api.util;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
 import java.util.StringTokenizer;
@@ -41,7 +40,6 @@ import xyz.kvantum.server.api.request.Cookie;
 {
 
 	private static final Pattern PATTERN_COOKIE = Pattern.compile( "(?<key>[A-Za-z0-9_\\-]*)=" + "(?<value>.*)?" );
-	private static final ListMultimap<AsciiString, Cookie> EMPTY_COOKIES = ArrayListMultimap.create( 0, 0 );
 	private static final String CONST_COOKIE = "Cookie";
 	private static final String CONST_SLASH_S = "\\s";
 	private static final String CONST_EMPTY = "";
@@ -66,10 +64,11 @@ import xyz.kvantum.server.api.request.Cookie;
 		Assert.isValid( request );
 		// Extract the cookie header
 		final String raw = request.getHeader( CONST_COOKIE ).toString().replaceAll( CONST_SLASH_S, CONST_EMPTY );
-		// Avoid unnecessary logic
+		// Avoid unnecessary logic. The map is handed out per request, as the session
+		// manager writes the session cookies into it
 		if ( raw.isEmpty() )
 		{
-			return EMPTY_COOKIES;
+			return createNewMap();
 		}
 		// Create a new multimap
 		final ListMultimap<AsciiString, Cookie> cookies = createNewMap();
@@ -22,10 +22,12 @@
 package xyz.kvantum.server.api.util;
 
 import com.google.common.collect.ImmutableList;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.annotation.Nullable;
 import lombok.Builder;
 import lombok.Getter;
@@ -35,23 +37,52 @@ import xyz.kvantum.server.api.config.Message;
 import xyz.kvantum.server.api.core.Kvantum;
 import xyz.kvantum.server.api.core.ServerImplementation;
 import xyz.kvantum.server.api.events.RequestHandlerAddedEvent;
+import xyz.kvantum.server.api.matching.RouteTree;
 import xyz.kvantum.server.api.matching.Router;
 import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.views.RequestHandler;
 import xyz.kvantum.server.api.views.errors.View404;
 
 /**
- * A simple {@link Router} implementation,
+ * The default {@link Router} implementation. Handlers are kept in registration order, and indexed in a {@link
+ * RouteTree} so that a request is only tested against handlers that may actually match it
  */
-@SuppressWarnings("unused") @Builder public final class RequestManager extends Router
+@SuppressWarnings("unused") public final class RequestManager extends Router
 {
 
 	private static final Generator<AbstractRequest, RequestHandler> DEFAULT_404_GENERATOR = (request) -> View404
 			.construct( request.getQuery().getFullRequest() );
 
-	@Builder.Default private List<RequestHandler> views = new ArrayList<>();
+	private final List<RequestHandler> views = new CopyOnWriteArrayList<>();
+	private final Set<String> viewPatterns = ConcurrentHashMap.newKeySet();
+	private final RouteTree routeTree = new RouteTree();
 
-	@Setter @Getter @NonNull @Builder.Default private Generator<AbstractRequest, RequestHandler> error404Generator = DEFAULT_404_GENERATOR;
+	@Setter @Getter @NonNull private Generator<AbstractRequest, RequestHandler> error404Generator;
+
+	@Builder private RequestManager(@Nullable final List<RequestHandler> views,
+			@Nullable final Generator<AbstractRequest, RequestHandler> error404Generator)
+	{
+		this.error404Generator = error404Generator == null
+				? DEFAULT_404_GENERATOR
+				: error404Generator;
+		if ( views != null )
+		{
+			for ( final RequestHandler view : views )
+			{
+				if ( !this.viewPatterns.add( getPatternKey( view ) ) )
+				{
+					throw new IllegalArgumentException( "Duplicate view pattern: " + view.toString() );
+				}
+				this.views.add( view );
+				this.routeTree.add( view );
+			}
+		}
+	}
+
+	private static String getPatternKey(final RequestHandler view)
+	{
+		return view.toString().toLowerCase( Locale.ENGLISH );
+	}
 
 	/**
 	 * Register a view to the request manager
@@ -64,9 +95,8 @@ import xyz.kvantum.server.api.views.errors.View404;
 		//
 		// make sure the view pattern isn't registered yet
 		//
-		final Optional<RequestHandler> illegalRequestHandler = LambdaUtil
-				.getFirst( views, v -> v.toString().equalsIgnoreCase( view.toString() ) );
-		if ( illegalRequestHandler.isPresent() )
+		final String patternKey = getPatternKey( view );
+		if ( this.viewPatterns.contains( patternKey ) )
 		{
 			throw new IllegalArgumentException( "Duplicate view pattern: " + view.toString() );
 		}
@@ -84,7 +114,12 @@ import xyz.kvantum.server.api.views.errors.View404;
 		//
 		// register handler
 		//
-		views.add( view );
+		if ( !this.viewPatterns.add( patternKey ) )
+		{
+			throw new IllegalArgumentException( "Duplicate view pattern: " + view.toString() );
+		}
+		this.views.add( view );
+		this.routeTree.add( view );
 		return view;
 	}
 
@@ -97,15 +132,10 @@ import xyz.kvantum.server.api.views.errors.View404;
 	@Override public RequestHandler match(final AbstractRequest request)
 	{
 		Assert.isValid( request );
-		if ( !this.views.isEmpty() )
+		final RequestHandler handler = this.routeTree.match( request );
+		if ( handler != null )
 		{
-			for ( final RequestHandler handler : this.views )
-			{
-				if ( handler.matches( request ) )
-				{
-					return handler;
-				}
-			}
+			return handler;
 		}
 		return error404Generator.generate( request );
 	}
@@ -123,9 +153,10 @@ import xyz.kvantum.server.api.views.errors.View404;
 
 	@Override public void remove(@NonNull final RequestHandler view)
 	{
-		if ( this.views.contains( view ) )
+		if ( this.routeTree.remove( view ) )
 		{
 			this.views.remove( view );
+			this.viewPatterns.remove( getPatternKey( view ) );
 		} else
 		{
 			throw new IllegalArgumentException( "Cannot remove a view before registering it" );
@@ -134,6 +165,8 @@ import xyz.kvantum.server.api.views.errors.View404;
 
 	@Override public void clear()
 	{
+		this.routeTree.clear();
+		this.viewPatterns.clear();
 		Message.CLEARED_VIEWS.log( CollectionUtil.clear( this.views ) );
 	}
 
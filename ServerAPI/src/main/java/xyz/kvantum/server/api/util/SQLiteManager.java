@@ -45,6 +45,7 @@ import xyz.kvantum.server.api.exceptions.KvantumException;
 
 	private final Connection connection;
 	private final String name;
+	private final String url;
 
 	public SQLiteManager(@NonNull final String name) throws IOException, SQLException
 	{
@@ -56,7 +57,8 @@ import xyz.kvantum.server.api.exceptions.KvantumException;
 		{
 			throw new KvantumException( "Couldn't create: " + this.name );
 		}
-		this.connection = DriverManager.getConnection( "jdbc:sqlite:" + file.getAbsolutePath() );
+		this.url = "jdbc:sqlite:" + file.getAbsolutePath();
+		this.connection = DriverManager.getConnection( this.url );
 	}
 
 	public void executeUpdate(@NonNull final String sql) throws SQLException
@@ -68,6 +70,18 @@ import xyz.kvantum.server.api.exceptions.KvantumException;
 		}
 	}
 
+	/**
+	 * Open a new connection to the database. The shared connection is used by several threads in auto-commit mode,
+	 * so callers that need a transaction of their own have to use a separate connection, which they must close.
+	 *
+	 * @return New database connection
+	 * @throws SQLException If the connection cannot be opened
+	 */
+	public Connection openConnection() throws SQLException
+	{
+		return DriverManager.getConnection( this.url );
+	}
+
 	public PreparedStatement prepareStatement(@NonNull final String statement) throws SQLException
 	{
 		return connection.prepareStatement( statement );
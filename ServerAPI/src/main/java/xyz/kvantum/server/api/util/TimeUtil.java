@@ -22,6 +22,11 @@
 package xyz.kvantum.server.api.util;
 
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 import lombok.experimental.UtilityClass;
@@ -37,6 +42,12 @@ import lombok.experimental.UtilityClass;
 	public final static SimpleDateFormat logFormat;
 	public static final SimpleDateFormat accessLogFormat;
 
+	// Thread safe, as responses are generated concurrently
+	private static final DateTimeFormatter httpDateFormatter = DateTimeFormatter
+			.ofPattern( "EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH ).withZone( ZoneOffset.UTC );
+	private static final DateTimeFormatter accessLogDateFormatter = DateTimeFormatter
+			.ofPattern( "dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH ).withZone( ZoneId.systemDefault() );
+
 	static
 	{
 		httpFormat = new SimpleDateFormat( "EEE, dd MMM yyyy kk:mm:ss 'GMT'", Locale.ENGLISH );
@@ -63,12 +74,40 @@ import lombok.experimental.UtilityClass;
 	 */
 	public static String getHTTPTimeStamp(final Date date)
 	{
-		return getTimeStamp( httpFormat, date );
+		return httpDateFormatter.format( date.toInstant() );
+	}
+
+	/**
+	 * Parse a timestamp formatted with the HTTP-date format as defined by RFC 7231
+	 *
+	 * @param timeStamp RFC 7231 formatted timestamp
+	 * @return The time in milliseconds since the epoch, or -1 if the timestamp could not be parsed
+	 */
+	public static long parseHTTPTimeStamp(final CharSequence timeStamp)
+	{
+		try
+		{
+			return Instant.from( httpDateFormatter.parse( timeStamp ) ).toEpochMilli();
+		} catch ( final DateTimeException e )
+		{
+			return -1;
+		}
 	}
 
 	public static String getAccessLogTimeStamp(final long time)
 	{
-		return getTimeStamp( accessLogFormat, new Date( time ) );
+		return accessLogDateFormatter.format( Instant.ofEpochMilli( time ) );
+	}
+
+	/**
+	 * Append an access log formatted timestamp to a builder
+	 *
+	 * @param builder Builder to append to
+	 * @param time Time in milliseconds since the epoch
+	 */
+	public static void appendAccessLogTimeStamp(final StringBuilder builder, final long time)
+	{
+		accessLogDateFormatter.formatTo( Instant.ofEpochMilli( time ), builder );
 	}
 
 	/**
@@ -78,7 +117,7 @@ import lombok.experimental.UtilityClass;
 	 */
 	public static String getHTTPTimeStamp()
 	{
-		return getTimeStamp( httpFormat, new Date() );
+		return httpDateFormatter.format( Instant.now() );
 	}
 
 	public static String getTimeStamp(final SimpleDateFormat format, final Date date)
@@ -21,14 +21,17 @@
  */
 package xyz.kvantum.server.api.views;
 
+import java.util.Date;
 import java.util.Map;
 import lombok.NonNull;
 import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.cache.ResponseValidator;
 import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.response.Header;
 import xyz.kvantum.server.api.response.Response;
 import xyz.kvantum.server.api.util.FileExtension;
 import xyz.kvantum.server.api.util.IgnoreSyntax;
+import xyz.kvantum.server.api.util.TimeUtil;
 
 /**
  * Static file view that will server all files as attachments
@@ -44,14 +47,24 @@ public final class DownloadView extends StaticFileView implements IgnoreSyntax
 
 	@Override public void handle(final AbstractRequest r, final Response response)
 	{
-		final Path path = r.getMetaUnsafe( "path" );
+		final Path path = r.getMetaUnsafe( "file" );
 		final String fileName = path.getEntityName();
 		final FileExtension extension = r.getMetaUnsafe( "extension" );
 
 		response.getHeader().set( Header.HEADER_CONTENT_DISPOSITION,
 				String.format( "attachment; filename=\"%s.%s\"", fileName, extension.getOption() ) );
 		response.getHeader().set( Header.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
+		response.getHeader().set( Header.HEADER_ACCEPT_RANGES, ACCEPT_RANGES_BYTES );
 		response.getHeader().set( Header.HEADER_CONTENT_LENGTH, "" + r.<Long>getMetaUnsafe( "file_length" ) );
+		response.getHeader().set( Header.HEADER_ETAG, ResponseValidator.of( path ).getEntityTag() );
+		response.getHeader()
+				.set( Header.HEADER_LAST_MODIFIED, TimeUtil.getHTTPTimeStamp( new Date( path.getLastModified() ) ) );
+		response.setFile( path );
+	}
+
+	@Override protected boolean isServedVerbatim(final FileExtension extension)
+	{
+		return true;
 	}
 
 }
@@ -36,7 +36,9 @@ import lombok.Getter;
 import lombok.NonNull;
 import xyz.kvantum.server.api.core.ServerImplementation;
 import xyz.kvantum.server.api.exceptions.KvantumException;
+import xyz.kvantum.server.api.matching.ViewPattern;
 import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
 import xyz.kvantum.server.api.response.Response;
 import xyz.kvantum.server.api.util.Assert;
 import xyz.kvantum.server.api.util.ProviderFactory;
@@ -142,6 +144,29 @@ import xyz.kvantum.server.api.views.requesthandler.MiddlewareQueuePopulator;
 	 */
 	public abstract boolean matches(AbstractRequest request);
 
+	/**
+	 * Get the pattern that {@link #matches(AbstractRequest)} tests requests against. Routers use this to skip
+	 * handlers that cannot possibly match a request, so handlers that match requests in any other way must return
+	 * null, in which case they are tested against every request
+	 *
+	 * @return Routing pattern, or null
+	 */
+	@Nullable public ViewPattern getRoutingPattern()
+	{
+		return null; // Nullable
+	}
+
+	/**
+	 * Get the HTTP method that {@link #matches(AbstractRequest)} requires. Only used together with {@link
+	 * #getRoutingPattern()}
+	 *
+	 * @return Required method, or {@link HttpMethod#ALL} if all methods are accepted
+	 */
+	public HttpMethod getRoutingMethod()
+	{
+		return HttpMethod.ALL;
+	}
+
 	/**
 	 * Attempt to serve a request
 	 *
@@ -155,12 +180,15 @@ import xyz.kvantum.server.api.views.requesthandler.MiddlewareQueuePopulator;
 		//
 		// Allow middleware to act on the request
 		//
-		final MiddlewareQueue middlewareQueue = middlewareQueuePopulator.generateQueue();
-		middlewareQueue.handle( request );
-		if ( !middlewareQueue.finished() )
+		if ( !middlewareQueuePopulator.isEmpty() )
 		{
-			ServerImplementation.getImplementation().log( "Skipping request as a middleware broke the chain!" );
-			return null; // Nullable
+			final MiddlewareQueue middlewareQueue = middlewareQueuePopulator.generateQueue();
+			middlewareQueue.handle( request );
+			if ( !middlewareQueue.finished() )
+			{
+				ServerImplementation.getImplementation().log( "Skipping request as a middleware broke the chain!" );
+				return null; // Nullable
+			}
 		}
 
 		final Response response;
@@ -25,7 +25,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import xyz.kvantum.files.Path;
+import xyz.kvantum.server.api.cache.ResponseValidator;
+import xyz.kvantum.server.api.cache.ValidatorProvider;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.core.ServerImplementation;
 import xyz.kvantum.server.api.logging.Logger;
@@ -34,12 +37,16 @@ import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.request.HttpMethod;
 import xyz.kvantum.server.api.response.Header;
 import xyz.kvantum.server.api.response.Response;
+import xyz.kvantum.server.api.util.AsciiString;
 import xyz.kvantum.server.api.util.FileExtension;
 import xyz.kvantum.server.api.util.TimeUtil;
 
 @SuppressWarnings({ "WeakerAccess", "unused" }) public abstract class StaticFileView extends View
+		implements ValidatorProvider
 {
 
+	static final AsciiString ACCEPT_RANGES_BYTES = AsciiString.of( "bytes" );
+
 	final Collection<FileExtension> extensionList;
 
 	public StaticFileView(String filter, Map<String, Object> options, String name, Collection<FileExtension> extensions)
@@ -93,14 +100,19 @@ import xyz.kvantum.server.api.util.TimeUtil;
 		final Path path = ( Path ) r.getMeta( "file" );
 		final FileExtension extension = ( FileExtension ) r.getMeta( "extension" );
 		response.getHeader().set( Header.HEADER_CONTENT_TYPE, extension.getContentType() );
-		if ( extension.getReadType() == FileExtension.ReadType.BYTES || !ServerImplementation.getImplementation()
-				.getProcedure().hasHandlers() )
+		response.getHeader().set( Header.HEADER_ACCEPT_RANGES, ACCEPT_RANGES_BYTES );
+		if ( this.isServedVerbatim( extension ) )
 		{
+			response.getHeader().set( Header.HEADER_ETAG, ResponseValidator.of( path ).getEntityTag() );
 			if ( CoreConfig.debug )
 			{
-				Logger.debug( "Serving {} using byte[]", this );
+				Logger.debug( "Serving {} directly from the file system", this );
 			}
-			response.setBytes( path.readBytes() );
+			//
+			// Small files are served from the off-heap content cache by the server,
+			// so they aren't read into the heap here
+			//
+			response.setFile( path );
 		} else
 		{
 			response.setContent(
@@ -109,4 +121,28 @@ import xyz.kvantum.server.api.util.TimeUtil;
 		response.getHeader()
 				.set( Header.HEADER_LAST_MODIFIED, TimeUtil.getHTTPTimeStamp( new Date( path.getLastModified() ) ) );
 	}
+
+	@Nullable @Override public ResponseValidator getValidator(final AbstractRequest r)
+	{
+		final Path path = ( Path ) r.getMeta( "file" );
+		final FileExtension extension = ( FileExtension ) r.getMeta( "extension" );
+		if ( path == null || extension == null || !this.isServedVerbatim( extension ) )
+		{
+			return null;
+		}
+		return ResponseValidator.of( path );
+	}
+
+	/**
+	 * Check whether files with a given extension are sent exactly as they are stored, rather than being passed
+	 * through the string handlers. Only such responses can be validated without being generated
+	 *
+	 * @param extension File extension
+	 * @return True if the file content is sent as is
+	 */
+	protected boolean isServedVerbatim(final FileExtension extension)
+	{
+		return extension.getReadType() == FileExtension.ReadType.BYTES || !ServerImplementation.getImplementation()
+				.getProcedure().hasHandlers();
+	}
 }
@@ -417,7 +417,7 @@ import xyz.kvantum.server.api.util.Assert;
 			return false;
 		}
 
-		final Map<String, String> map = viewPattern.matches( request.getQuery().getFullRequest() );
+		final Map<String, String> map = viewPattern.matches( request.getQuery().getResource() );
 		if ( map != null )
 		{
 			request.addMeta( CONSTANT_VARIABLES, map );
@@ -433,6 +433,16 @@ import xyz.kvantum.server.api.util.Assert;
 		return map != null && passes( request );
 	}
 
+	@Override public ViewPattern getRoutingPattern()
+	{
+		return this.viewPattern;
+	}
+
+	@Override public HttpMethod getRoutingMethod()
+	{
+		return this.httpMethod;
+	}
+
 	/**
 	 * This is for further testing (... further than regex...) For example, check if a file exists etc.
 	 *
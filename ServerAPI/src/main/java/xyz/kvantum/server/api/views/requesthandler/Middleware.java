@@ -31,7 +31,8 @@ import xyz.kvantum.server.api.views.annotatedviews.ViewMatcher;
  * the database (and much, much more) </p> <p> Middleware is lined up in a sort of chain, by using a special queue. If a
  * middleware breaks the queue, the request will not be served by the view. ( Middleware can redirect requests to other
  * views without continuing the chain ) </p> <p> <h1>Creation</h1></br> You just have to extend {@link Middleware}. Your
- * class must have a public no-args constructor </br>
+ * class must have a public no-args constructor. A single instance is created per class, and it is shared between all
+ * requests, so middleware must be stateless (or thread safe) </br>
  * <pre>
  * public class ExampleMiddleware extends Middleware
  * {
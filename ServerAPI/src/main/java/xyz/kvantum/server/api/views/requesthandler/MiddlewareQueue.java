@@ -21,31 +21,57 @@
  */
 package xyz.kvantum.server.api.views.requesthandler;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Arrays;
 import xyz.kvantum.server.api.request.AbstractRequest;
 import xyz.kvantum.server.api.util.Assert;
 
 public final class MiddlewareQueue
 {
 
-	private final Queue<Middleware> queue = new ArrayDeque<>();
+	private Middleware[] chain;
+	private int size;
+	private int position = 0;
+	private boolean shared;
 
 	private boolean finished = false;
 
+	public MiddlewareQueue()
+	{
+		this.chain = new Middleware[ 4 ];
+		this.size = 0;
+		this.shared = false;
+	}
+
+	/**
+	 * Create a queue that walks through a precomputed chain. The chain is never modified, it is copied if more
+	 * middleware is added to the queue
+	 *
+	 * @param chain Middleware chain
+	 */
+	MiddlewareQueue(final Middleware[] chain)
+	{
+		this.chain = chain;
+		this.size = chain.length;
+		this.shared = true;
+	}
+
 	public void add(final Middleware middleware)
 	{
-		this.queue.add( middleware );
+		if ( this.shared || this.size == this.chain.length )
+		{
+			this.chain = Arrays.copyOf( this.chain, Math.max( 4, this.size * 2 ) );
+			this.shared = false;
+		}
+		this.chain[ this.size++ ] = middleware;
 	}
 
 	public void handle(final AbstractRequest request)
 	{
 		Assert.isValid( request );
 
-		final Middleware next = this.queue.poll();
-		if ( next != null )
+		if ( this.position < this.size )
 		{
-			next.handle( request, this );
+			this.chain[ this.position++ ].handle( request, this );
 		} else
 		{
 			finished = true;
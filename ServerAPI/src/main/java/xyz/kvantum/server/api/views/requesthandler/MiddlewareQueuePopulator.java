@@ -21,13 +21,44 @@
  */
 package xyz.kvantum.server.api.views.requesthandler;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Holds the middleware chain of a {@link xyz.kvantum.server.api.views.RequestHandler}. Middleware is instantiated
+ * once per class, and the instances are shared between all request handlers and requests. The chain itself is an
+ * immutable array that is replaced whenever middleware is added, so generating a queue doesn't copy anything.
+ */
 public final class MiddlewareQueuePopulator
 {
 
-	private final Collection<Class<? extends Middleware>> middleware = new ArrayList<>();
+	private static final Map<Class<? extends Middleware>, Middleware> INSTANCES = new ConcurrentHashMap<>();
+	private static final Middleware[] EMPTY_CHAIN = new Middleware[ 0 ];
+
+	private volatile Middleware[] chain = EMPTY_CHAIN;
+
+	private static Middleware getInstance(final Class<? extends Middleware> middleware)
+	{
+		Middleware instance = INSTANCES.get( middleware );
+		if ( instance == null )
+		{
+			try
+			{
+				instance = middleware.getConstructor().newInstance();
+			} catch ( final Exception e )
+			{
+				e.printStackTrace();
+				return null;
+			}
+			final Middleware existing = INSTANCES.putIfAbsent( middleware, instance );
+			if ( existing != null )
+			{
+				instance = existing;
+			}
+		}
+		return instance;
+	}
 
 	public void add(final Class<? extends Middleware> middleware)
 	{
@@ -35,30 +66,38 @@ public final class MiddlewareQueuePopulator
 		{
 			return;
 		}
-		try
+		final Middleware instance = getInstance( middleware );
+		if ( instance != null )
 		{
-			middleware.getConstructor();
-		} catch ( final Exception e )
-		{
-			e.printStackTrace();
-			return;
+			this.add( instance );
 		}
-		this.middleware.add( middleware );
+	}
+
+	/**
+	 * Add a middleware instance to the chain. The instance will be shared between all requests
+	 *
+	 * @param middleware Middleware instance
+	 */
+	public synchronized void add(final Middleware middleware)
+	{
+		final Middleware[] extended = Arrays.copyOf( this.chain, this.chain.length + 1 );
+		extended[ extended.length - 1 ] = middleware;
+		this.chain = extended;
+	}
+
+	/**
+	 * Check whether there is any middleware in the chain
+	 *
+	 * @return true if the chain is empty
+	 */
+	public boolean isEmpty()
+	{
+		return this.chain.length == 0;
 	}
 
 	public MiddlewareQueue generateQueue()
 	{
-		final MiddlewareQueue queue = new MiddlewareQueue();
-		middleware.forEach( clazz -> {
-			try
-			{
-				queue.add( clazz.newInstance() );
-			} catch ( final Exception e )
-			{
-				e.printStackTrace();
-			}
-		} );
-		return queue;
+		return new MiddlewareQueue( this.chain );
 	}
 
 }
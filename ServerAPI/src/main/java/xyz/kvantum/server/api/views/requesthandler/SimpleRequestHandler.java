@@ -103,6 +103,16 @@ import xyz.kvantum.server.api.views.RequestHandler;
 		return compiledPattern;
 	}
 
+	@Override public ViewPattern getRoutingPattern()
+	{
+		return getPattern();
+	}
+
+	@Override public HttpMethod getRoutingMethod()
+	{
+		return this.httpMethod;
+	}
+
 	@Override public String toString()
 	{
 		return this.pattern;
@@ -120,7 +130,7 @@ import xyz.kvantum.server.api.views.RequestHandler;
 			}
 			return false;
 		}
-		final Map<String, String> map = getPattern().matches( request.getQuery().getFullRequest() );
+		final Map<String, String> map = getPattern().matches( request.getQuery().getResource() );
 		if ( map != null )
 		{
 			request.addMeta( "variables", map );
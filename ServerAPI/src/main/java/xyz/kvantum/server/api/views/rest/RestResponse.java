@@ -89,7 +89,7 @@ import xyz.kvantum.server.api.util.AsciiString;
 
 	protected final boolean matches(AbstractRequest request)
 	{
-		final Map<String, String> map = viewPattern.matches( request.getQuery().getFullRequest() );
+		final Map<String, String> map = viewPattern.matches( request.getQuery().getResource() );
 		if ( map != null )
 		{
 			request.addMeta( "variables", map );
@@ -0,0 +1,140 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api;
+
+import java.net.InetSocketAddress;
+import xyz.kvantum.server.api.matching.ViewPattern;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.request.Request;
+import xyz.kvantum.server.api.request.RequestCompiler;
+import xyz.kvantum.server.api.response.Response;
+import xyz.kvantum.server.api.socket.SocketContext;
+import xyz.kvantum.server.api.util.ProtocolType;
+import xyz.kvantum.server.api.views.RequestHandler;
+
+/**
+ * Objects that tests need, but that aren't being tested themselves. These are shared with the tests of the other
+ * modules through the test jar of this module.
+ */
+public final class TestFixtures
+{
+
+	private TestFixtures()
+	{
+	}
+
+	/**
+	 * Create a request that doesn't have a query yet, as if its request line hasn't been read
+	 *
+	 * @return Created request
+	 */
+	public static AbstractRequest request()
+	{
+		return new Request( new SocketContext( ProtocolType.HTTP, new InetSocketAddress( 0 ), () -> true ) );
+	}
+
+	/**
+	 * Create a request for a resource
+	 *
+	 * @param method Request method
+	 * @param resource Requested resource, including the query string
+	 * @return Created request
+	 */
+	public static AbstractRequest request(final HttpMethod method, final String resource)
+	{
+		final AbstractRequest request = request();
+		RequestCompiler.compileQuery( request, method, resource );
+		return request;
+	}
+
+	/**
+	 * Request handler that doesn't generate any responses. Unrouted handlers match every request.
+	 */
+	public static final class TestHandler extends RequestHandler
+	{
+
+		private final ViewPattern pattern;
+		private final HttpMethod method;
+		private int tested = 0;
+
+		public TestHandler()
+		{
+			this( null, HttpMethod.ALL );
+		}
+
+		public TestHandler(final String pattern, final HttpMethod method)
+		{
+			this.pattern = pattern == null
+					? null
+					: new ViewPattern( pattern );
+			this.method = method;
+		}
+
+		/**
+		 * Get the amount of requests that the handler has been matched against
+		 *
+		 * @return Amount of tested requests
+		 */
+		public int getTested()
+		{
+			return this.tested;
+		}
+
+		@Override public boolean matches(final AbstractRequest request)
+		{
+			this.tested++;
+			if ( this.pattern == null )
+			{
+				return true;
+			}
+			return ( this.method == HttpMethod.ALL || this.method == request.getQuery().getMethod() )
+					&& this.pattern.matches( request.getQuery().getFullRequest() ) != null;
+		}
+
+		@Override public ViewPattern getRoutingPattern()
+		{
+			return this.pattern;
+		}
+
+		@Override public HttpMethod getRoutingMethod()
+		{
+			return this.method;
+		}
+
+		@Override public Response generate(final AbstractRequest request)
+		{
+			return null;
+		}
+
+		@Override public String getName()
+		{
+			return "test";
+		}
+
+		@Override public boolean forceHTTPS()
+		{
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.TestFixtures;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.util.AsciiString;
+
+class CacheVarianceTest
+{
+
+	private static AbstractRequest request(final String resource, final String language)
+	{
+		final AbstractRequest request = TestFixtures.request( HttpMethod.GET, resource );
+		request.getHeaders().put( AsciiString.of( "accept-language" ), AsciiString.of( language ) );
+		return request;
+	}
+
+	@Test void getKey()
+	{
+		final CacheVariance none = CacheVariance.NONE;
+		assertEquals( none.getKey( request( "/news?page=1&sort=date", "en" ) ),
+				none.getKey( request( "/news?sort=date&page=1", "sv" ) ) );
+		assertNotEquals( none.getKey( request( "/news?page=1", "en" ) ),
+				none.getKey( request( "/news?page=2", "en" ) ) );
+		assertNotEquals( none.getKey( request( "/news/1", "en" ) ), none.getKey( request( "/news/2", "en" ) ) );
+
+		final CacheVariance language = CacheVariance.builder().header( "Accept-Language" ).build();
+		assertEquals( language.getKey( request( "/news", "en" ) ), language.getKey( request( "/news", "en" ) ) );
+		assertNotEquals( language.getKey( request( "/news", "en" ) ), language.getKey( request( "/news", "sv" ) ) );
+	}
+
+	@Test void getVaryHeaders()
+	{
+		assertTrue( CacheVariance.NONE.getVaryHeaders().isEmpty() );
+		assertFalse( CacheVariance.NONE.isSessionDependent() );
+
+		final CacheVariance variance = CacheVariance.builder().header( "Accept-Language" ).cookie( "theme" ).build();
+		assertTrue( variance.isSessionDependent() );
+		assertEquals( Arrays.asList( AsciiString.of( "Accept-Language" ), AsciiString.of( "Cookie" ) ),
+				variance.getVaryHeaders() );
+		assertEquals( Collections.singletonList( AsciiString.of( "Cookie" ) ),
+				CacheVariance.builder().sessionVariable( "role" ).build().getVaryHeaders() );
+	}
+
+}
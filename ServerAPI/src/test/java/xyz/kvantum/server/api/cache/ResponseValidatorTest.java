@@ -0,0 +1,53 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.util.TimeUtil;
+
+class ResponseValidatorTest
+{
+
+	@Test void matches()
+	{
+		assertTrue( ResponseValidator.matches( "\"abc\"", "\"abc\"" ) );
+		assertTrue( ResponseValidator.matches( "\"xyz\", W/\"abc\"", "\"abc\"" ) );
+		assertTrue( ResponseValidator.matches( "*", "\"abc\"" ) );
+		assertFalse( ResponseValidator.matches( "\"xyz\"", "\"abc\"" ) );
+	}
+
+	@Test void lastModifiedTimeStamp()
+	{
+		final long time = 1_500_000_000_000L;
+		final ResponseValidator validator = new ResponseValidator( "\"tag\"", time );
+		assertEquals( "Fri, 14 Jul 2017 02:40:00 GMT", validator.getLastModifiedTimeStamp() );
+		assertEquals( time, TimeUtil.parseHTTPTimeStamp( validator.getLastModifiedTimeStamp() ) );
+		assertEquals( validator.getLastModifiedTimeStamp(), TimeUtil.getHTTPTimeStamp( new Date( time ) ) );
+		assertEquals( -1, TimeUtil.parseHTTPTimeStamp( "yesterday" ) );
+	}
+
+}
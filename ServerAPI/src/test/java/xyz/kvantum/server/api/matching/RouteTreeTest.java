@@ -0,0 +1,81 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.matching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static xyz.kvantum.server.api.TestFixtures.request;
+
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.TestFixtures.TestHandler;
+import xyz.kvantum.server.api.request.HttpMethod;
+
+class RouteTreeTest
+{
+
+	@Test void matchesInRegistrationOrder()
+	{
+		final RouteTree routeTree = new RouteTree();
+		final TestHandler variable = new TestHandler( "user/<name>", HttpMethod.ALL );
+		final TestHandler fixed = new TestHandler( "user/admin", HttpMethod.ALL );
+		final TestHandler unrouted = new TestHandler();
+		routeTree.add( variable );
+		routeTree.add( unrouted );
+		routeTree.add( fixed );
+
+		assertSame( variable, routeTree.match( request( HttpMethod.GET, "/user/admin" ) ) );
+		assertSame( variable, routeTree.match( request( HttpMethod.GET, "/USER/someone/" ) ) );
+		assertSame( unrouted, routeTree.match( request( HttpMethod.GET, "/user" ) ) );
+
+		assertTrue( routeTree.remove( variable ) );
+		assertFalse( routeTree.remove( variable ) );
+		assertSame( unrouted, routeTree.match( request( HttpMethod.GET, "/user/admin" ) ) );
+		assertTrue( routeTree.remove( unrouted ) );
+		assertSame( fixed, routeTree.match( request( HttpMethod.GET, "/user/admin?page=1" ) ) );
+		assertNull( routeTree.match( request( HttpMethod.GET, "/user/someone" ) ) );
+	}
+
+	@Test void skipsUnrelatedHandlers()
+	{
+		final RouteTree routeTree = new RouteTree();
+		final TestHandler news = new TestHandler( "news/[page]", HttpMethod.ALL );
+		final TestHandler file = new TestHandler( "files/<name>.<extension>", HttpMethod.ALL );
+		final TestHandler post = new TestHandler( "files/upload", HttpMethod.POST );
+		routeTree.add( news );
+		routeTree.add( file );
+		routeTree.add( post );
+
+		assertSame( file, routeTree.match( request( HttpMethod.GET, "/files/some.archive.zip" ) ) );
+		assertSame( post, routeTree.match( request( HttpMethod.POST, "/files/upload" ) ) );
+		assertNull( routeTree.match( request( HttpMethod.GET, "/files/upload" ) ) );
+		assertSame( news, routeTree.match( request( HttpMethod.GET, "/news" ) ) );
+		assertEquals( 1, news.getTested() );
+		assertEquals( 1, post.getTested() );
+
+		routeTree.clear();
+		assertNull( routeTree.match( request( HttpMethod.GET, "/news" ) ) );
+	}
+
+}
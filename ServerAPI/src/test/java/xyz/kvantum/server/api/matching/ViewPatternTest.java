@@ -81,4 +81,28 @@ class ViewPatternTest
 		Assert.assertNull( pattern3.matches( "user/Username/posts/foo/bar" ) );
 	}
 
+	@Test void matchesDelimiters()
+	{
+		final ViewPattern pattern1 = new ViewPattern( "/Files/<name>.<extension>/" );
+		Map<String, String> map = pattern1.matches( "/FILES/readme.md?download=true" );
+		Assert.assertNotNull( map );
+		Assert.assertEquals( "readme", map.get( "name" ) );
+		Assert.assertEquals( "md", map.get( "extension" ) );
+
+		// Only the last dot separates tokens
+		map = pattern1.matches( "files/archive.tar.gz" );
+		Assert.assertNotNull( map );
+		Assert.assertEquals( "archive§tar", map.get( "name" ) );
+		Assert.assertEquals( "gz", map.get( "extension" ) );
+
+		Assert.assertNull( pattern1.matches( "files/readme" ) );
+		Assert.assertNull( pattern1.matches( "files/readme/md" ) );
+		Assert.assertNull( pattern1.matches( "file/readme.md" ) );
+
+		final ViewPattern pattern2 = new ViewPattern( "" );
+		Assert.assertNotNull( pattern2.matches( "/" ) );
+		Assert.assertNotNull( pattern2.matches( "?foo=bar" ) );
+		Assert.assertNull( pattern2.matches( "/foo" ) );
+	}
+
 }
@@ -0,0 +1,79 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest
+{
+
+	@Test void parseSingle()
+	{
+		assertEquals( Collections.singletonList( new ByteRange( 0, 499 ) ), ByteRange.parse( "bytes=0-499", 1000 ) );
+		assertEquals( Collections.singletonList( new ByteRange( 500, 999 ) ), ByteRange.parse( "bytes=500-", 1000 ) );
+		assertEquals( Collections.singletonList( new ByteRange( 900, 999 ) ), ByteRange.parse( "bytes=-100", 1000 ) );
+		assertEquals( Collections.singletonList( new ByteRange( 0, 999 ) ), ByteRange.parse( "bytes=-5000", 1000 ) );
+		assertEquals( Collections.singletonList( new ByteRange( 990, 999 ) ),
+				ByteRange.parse( "bytes=990-2000", 1000 ) );
+	}
+
+	@Test void parseMultiple()
+	{
+		assertEquals( Arrays.asList( new ByteRange( 0, 9 ), new ByteRange( 20, 29 ) ),
+				ByteRange.parse( "bytes=20-29, 0-9", 1000 ) );
+		assertEquals( Collections.singletonList( new ByteRange( 0, 29 ) ),
+				ByteRange.parse( "bytes=0-9,10-19,15-29", 1000 ) );
+	}
+
+	@Test void parseUnsatisfiable()
+	{
+		final List<ByteRange> ranges = ByteRange.parse( "bytes=1000-1200", 1000 );
+		assertNotNull( ranges );
+		assertTrue( ranges.isEmpty() );
+		assertEquals( "bytes */1000", ByteRange.unsatisfiable( 1000 ) );
+	}
+
+	@Test void parseMalformed()
+	{
+		assertNull( ByteRange.parse( null, 1000 ) );
+		assertNull( ByteRange.parse( "items=0-10", 1000 ) );
+		assertNull( ByteRange.parse( "bytes=10-5", 1000 ) );
+		assertNull( ByteRange.parse( "bytes=a-b", 1000 ) );
+		assertNull( ByteRange.parse( "bytes=5", 1000 ) );
+	}
+
+	@Test void toContentRange()
+	{
+		final ByteRange range = new ByteRange( 0, 499 );
+		assertEquals( 500, range.length() );
+		assertEquals( "bytes 0-499/1000", range.toContentRange( 1000 ) );
+	}
+
+}
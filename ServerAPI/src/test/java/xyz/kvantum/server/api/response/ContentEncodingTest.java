@@ -0,0 +1,55 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class ContentEncodingTest
+{
+
+	private static final Collection<ContentEncoding> ALL = Arrays
+			.asList( ContentEncoding.GZIP, ContentEncoding.DEFLATE );
+
+	@Test void select()
+	{
+		assertEquals( ContentEncoding.GZIP, ContentEncoding.select( "gzip, deflate, br", ALL ) );
+		assertEquals( ContentEncoding.DEFLATE, ContentEncoding.select( "deflate", ALL ) );
+		assertEquals( ContentEncoding.DEFLATE, ContentEncoding.select( "gzip;q=0.5, deflate", ALL ) );
+		assertEquals( ContentEncoding.GZIP, ContentEncoding.select( "*", ALL ) );
+		assertEquals( ContentEncoding.DEFLATE, ContentEncoding.select( "gzip;q=0, *", ALL ) );
+	}
+
+	@Test void selectNone()
+	{
+		assertNull( ContentEncoding.select( "", ALL ) );
+		assertNull( ContentEncoding.select( "br, identity", ALL ) );
+		assertNull( ContentEncoding.select( "gzip;q=0", ALL ) );
+		assertNull( ContentEncoding.select( "deflate", Collections.singletonList( ContentEncoding.GZIP ) ) );
+	}
+
+}
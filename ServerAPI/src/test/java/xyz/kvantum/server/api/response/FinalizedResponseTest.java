@@ -0,0 +1,45 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.TestFixtures;
+import xyz.kvantum.server.api.request.AbstractRequest;
+import xyz.kvantum.server.api.request.HttpMethod;
+import xyz.kvantum.server.api.util.TimeUtil;
+
+class FinalizedResponseTest
+{
+
+	@Test void toLogString()
+	{
+		final AbstractRequest request = TestFixtures.request( HttpMethod.GET, "/news" );
+		final long time = System.currentTimeMillis();
+		final FinalizedResponse response = FinalizedResponse.builder().address( "external" )
+				.query( request.getQuery() ).status( "200 OK" ).length( 512 ).timeFinished( time ).build();
+		assertEquals( "external - - [" + TimeUtil.getAccessLogTimeStamp( time ) + "] \"GET /news HTTP/1.1\" 200 512",
+				response.toLogString() );
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.pojo.KvantumPojo;
+import xyz.kvantum.server.api.util.AsciiString;
+
+class SessionWriteBehindTest
+{
+
+	@Test void flush()
+	{
+		final RecordingDatabase database = new RecordingDatabase();
+		final SessionWriteBehind writeBehind = new SessionWriteBehind( database, 3600, 100 );
+
+		final TestSession first = new TestSession( "first" );
+		final TestSession second = new TestSession( "second" );
+		final TestSession deleted = new TestSession( "deleted" );
+		writeBehind.enqueue( first.id, first );
+		writeBehind.enqueue( first.id, first );
+		writeBehind.enqueue( second.id, second );
+		writeBehind.enqueue( deleted.id, deleted );
+		deleted.setDeleted();
+		writeBehind.enqueue( AsciiString.of( "discarded" ), new TestSession( "discarded" ) );
+		writeBehind.discard( AsciiString.of( "discarded" ) );
+
+		assertSame( first, writeBehind.getPending( first.id ) );
+		assertEquals( 0, database.batches.size() );
+
+		writeBehind.flush();
+		assertEquals( 1, database.batches.size() );
+		assertEquals( 2, database.batches.get( 0 ).size() );
+		assertNull( writeBehind.getPending( first.id ) );
+
+		writeBehind.close();
+		assertEquals( 1, database.batches.size() );
+	}
+
+	@Test void flushWhenFull() throws InterruptedException
+	{
+		final RecordingDatabase database = new RecordingDatabase();
+		final SessionWriteBehind writeBehind = new SessionWriteBehind( database, 3600, 2 );
+		writeBehind.enqueue( AsciiString.of( "first" ), new TestSession( "first" ) );
+		writeBehind.enqueue( AsciiString.of( "second" ), new TestSession( "second" ) );
+		for ( int i = 0; i < 100 && database.batches.isEmpty(); i++ )
+		{
+			Thread.sleep( 10 );
+		}
+		assertEquals( 1, database.batches.size() );
+		writeBehind.close();
+	}
+
+	@Test void flushFailure()
+	{
+		final RecordingDatabase database = new RecordingDatabase();
+		final SessionWriteBehind writeBehind = new SessionWriteBehind( database, 3600, 100 );
+		final TestSession session = new TestSession( "session" );
+		writeBehind.enqueue( session.id, session );
+
+		// Sessions stay queued, and can still be found, until they have been written
+		database.failing = true;
+		writeBehind.flush();
+		assertEquals( 0, database.batches.size() );
+		assertSame( session, writeBehind.getPending( session.id ) );
+
+		database.failing = false;
+		writeBehind.flush();
+		assertEquals( 1, database.batches.size() );
+		assertNull( writeBehind.getPending( session.id ) );
+		writeBehind.close();
+	}
+
+	private static final class RecordingDatabase implements ISessionDatabase
+	{
+
+		private final List<Collection<ISession>> batches = Collections.synchronizedList( new ArrayList<>() );
+		private volatile boolean failing;
+
+		@Override public void setup()
+		{
+		}
+
+		@Override public SessionLoad getSessionLoad(final AsciiString sessionID)
+		{
+			return null;
+		}
+
+		@Override public void storeSession(final ISession session)
+		{
+			throw new UnsupportedOperationException( "Sessions should be stored in batches" );
+		}
+
+		@Override public void storeSessions(final Collection<ISession> sessions) throws SQLException
+		{
+			if ( this.failing )
+			{
+				throw new SQLException( "The database is not available" );
+			}
+			this.batches.add( new ArrayList<>( sessions ) );
+		}
+
+		@Override public void updateSession(final AsciiString session)
+		{
+		}
+
+		@Override public void deleteSession(final AsciiString session)
+		{
+		}
+	}
+
+	private static final class TestSession implements ISession
+	{
+
+		private final AsciiString id;
+		private final Map<String, Object> values = new HashMap<>();
+		private boolean deleted;
+
+		private TestSession(final String id)
+		{
+			this.id = AsciiString.of( id );
+			this.values.put( "id", this.id );
+		}
+
+		@Override public AsciiString getSessionKey()
+		{
+			return this.id;
+		}
+
+		@Override public void setSessionKey(final AsciiString sessionKey)
+		{
+		}
+
+		@Override public void setDeleted()
+		{
+			this.deleted = true;
+		}
+
+		@Override public boolean isDeleted()
+		{
+			return this.deleted;
+		}
+
+		@Override public ISession set(final String key, final Object value)
+		{
+			this.values.put( key, value );
+			return this;
+		}
+
+		@Override public KvantumPojo<ISession> toKvantumPojo()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override public <T> T getOrCompute(final String key, final Function<String, ? extends T> function)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override public boolean contains(final String variable)
+		{
+			return this.values.containsKey( variable );
+		}
+
+		@Override public Object get(final String variable)
+		{
+			return this.values.get( variable );
+		}
+
+		@Override public Map<String, Object> getAll()
+		{
+			return this.values;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.server.api.views.requesthandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static xyz.kvantum.server.api.TestFixtures.request;
+
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.request.AbstractRequest;
+
+class MiddlewareQueuePopulatorTest
+{
+
+	@Test void generateQueue()
+	{
+		CountingMiddleware.instances = 0;
+		final MiddlewareQueuePopulator first = new MiddlewareQueuePopulator();
+		final MiddlewareQueuePopulator second = new MiddlewareQueuePopulator();
+		assertTrue( first.isEmpty() );
+		first.add( CountingMiddleware.class );
+		second.add( CountingMiddleware.class );
+		assertFalse( first.isEmpty() );
+
+		for ( int i = 0; i < 10; i++ )
+		{
+			final MiddlewareQueue queue = first.generateQueue();
+			queue.handle( request() );
+			assertTrue( queue.finished() );
+		}
+		second.generateQueue().handle( request() );
+		// The middleware is only instantiated once
+		assertEquals( 1, CountingMiddleware.instances );
+
+		// Middleware added to a queue doesn't leak into the chain
+		final MiddlewareQueue breaking = first.generateQueue();
+		breaking.add( new BreakingMiddleware() );
+		breaking.handle( request() );
+		assertFalse( breaking.finished() );
+		final MiddlewareQueue queue = first.generateQueue();
+		queue.handle( request() );
+		assertTrue( queue.finished() );
+	}
+
+	public static final class CountingMiddleware extends Middleware
+	{
+
+		private static int instances;
+
+		public CountingMiddleware()
+		{
+			instances++;
+		}
+
+		@Override public void handle(final AbstractRequest request, final MiddlewareQueue queue)
+		{
+			queue.handle( request );
+		}
+	}
+
+	private static final class BreakingMiddleware extends Middleware
+	{
+
+		@Override public void handle(final AbstractRequest request, final MiddlewareQueue queue)
+		{
+		}
+	}
+
+}
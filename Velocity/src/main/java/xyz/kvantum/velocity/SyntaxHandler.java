@@ -22,14 +22,13 @@
 package xyz.kvantum.velocity;
 
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 import xyz.kvantum.server.api.request.AbstractRequest;
-import xyz.kvantum.server.api.template.TemplateHandler;
 import xyz.kvantum.server.api.template.TemplateSyntaxHandler;
 import xyz.kvantum.server.api.templates.TemplateManager;
 import xyz.kvantum.server.api.util.ProviderFactory;
@@ -39,14 +38,28 @@ import xyz.kvantum.server.api.views.RequestHandler;
 public class SyntaxHandler extends TemplateSyntaxHandler
 {
 
-	SyntaxHandler(TemplateHandler templateHandler)
+	private final VelocityEngine velocityEngine;
+
+	SyntaxHandler(final VelocityEngine velocityEngine)
 	{
-		super( templateHandler );
+		super( velocityEngine );
+		this.velocityEngine = velocityEngine;
 	}
 
 	@Override protected String handle(RequestHandler requestHandler, AbstractRequest request, String in)
 	{
-		String out = in;
+		final StringWriter writer = new StringWriter();
+		velocityEngine.getTemplate( requestHandler, in ).merge( createContext( requestHandler, request ), writer );
+		return writer.toString();
+	}
+
+	@Override protected void handle(RequestHandler requestHandler, AbstractRequest request, String in, Writer out)
+	{
+		velocityEngine.getTemplate( requestHandler, in ).merge( createContext( requestHandler, request ), out );
+	}
+
+	private static VelocityContext createContext(final RequestHandler requestHandler, final AbstractRequest request)
+	{
 		final Map<String, ProviderFactory<? extends VariableProvider>> factories = new HashMap<>();
 		final Map<String, Object> objects = new HashMap<>();
 
@@ -75,11 +88,7 @@ public class SyntaxHandler extends TemplateSyntaxHandler
 			objects.put( entry.getKey(), entryObjects );
 		}
 
-		final VelocityContext context = new VelocityContext( objects );
-		final StringWriter writer = new StringWriter();
-		Velocity.evaluate( context, writer, "SyntaxHandler", out );
-		out = writer.toString();
-		return out;
+		return new VelocityContext( objects );
 	}
 
 }
@@ -21,15 +21,24 @@
  */
 package xyz.kvantum.velocity;
 
+import java.io.StringReader;
+import org.apache.velocity.Template;
 import org.apache.velocity.app.Velocity;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.RuntimeSingleton;
+import org.apache.velocity.runtime.parser.ParseException;
 import xyz.kvantum.server.api.config.CoreConfig;
 import xyz.kvantum.server.api.core.ServerImplementation;
+import xyz.kvantum.server.api.template.TemplateCache;
 import xyz.kvantum.server.api.template.TemplateHandler;
+import xyz.kvantum.server.api.views.RequestHandler;
 
 public class VelocityEngine extends TemplateHandler
 {
 
 	private static VelocityEngine instance;
+	private final TemplateCache<Template> templates = new TemplateCache<>();
 
 	private VelocityEngine()
 	{
@@ -45,6 +54,35 @@ public class VelocityEngine extends TemplateHandler
 		return instance;
 	}
 
+	private static Template parse(final String name, final String in)
+	{
+		final RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+		final Template template = new Template();
+		template.setRuntimeServices( runtimeServices );
+		template.setName( name );
+		try
+		{
+			template.setData( runtimeServices.parse( new StringReader( in ), template ) );
+		} catch ( final ParseException e )
+		{
+			throw new ParseErrorException( e, name );
+		}
+		template.initDocument();
+		return template;
+	}
+
+	/**
+	 * Get the parsed version of a template generated by a request handler, parsing it if it hasn't been parsed yet
+	 *
+	 * @param requestHandler Request handler that generated the template
+	 * @param in Template source
+	 * @return Parsed template
+	 */
+	Template getTemplate(final RequestHandler requestHandler, final String in)
+	{
+		return this.templates.get( requestHandler, in, source -> parse( requestHandler.getName(), source ) );
+	}
+
 	@Override public void onLoad()
 	{
 		Velocity.init();
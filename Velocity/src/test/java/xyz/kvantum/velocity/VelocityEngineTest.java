@@ -0,0 +1,73 @@
+/*
+ *    _  __                     _
+ *    | |/ /__   __ __ _  _ __  | |_  _   _  _ __ ___
+ *    | ' / \ \ / // _` || '_ \ | __|| | | || '_ ` _ \
+ *    | . \  \ V /| (_| || | | || |_ | |_| || | | | | |
+ *    |_|\_\  \_/  \__,_||_| |_| \__| \__,_||_| |_| |_|
+ *
+ *    Copyright (C) 2018 IntellectualSites
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xyz.kvantum.velocity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import xyz.kvantum.server.api.TestFixtures.TestHandler;
+import xyz.kvantum.server.api.views.RequestHandler;
+
+class VelocityEngineTest
+{
+
+	@BeforeAll static void init()
+	{
+		Velocity.init();
+	}
+
+	private static String merge(final Template template)
+	{
+		final StringWriter writer = new StringWriter();
+		template.merge( new VelocityContext( Collections.singletonMap( "user", "Alice" ) ), writer );
+		return writer.toString();
+	}
+
+	@Test void getTemplate()
+	{
+		final VelocityEngine engine = VelocityEngine.getInstance();
+		final RequestHandler handler = new TestHandler();
+
+		final Template template = engine.getTemplate( handler, "Hello $user" );
+		assertEquals( "Hello Alice", merge( template ) );
+		// The same source is only parsed once
+		assertSame( template, engine.getTemplate( handler, new String( "Hello $user" ) ) );
+		// A changed source is parsed again
+		final Template changed = engine.getTemplate( handler, "Bye $user" );
+		assertNotSame( template, changed );
+		assertEquals( "Bye Alice", merge( changed ) );
+		// Handlers that serve several files keep a template for each of them
+		assertSame( template, engine.getTemplate( handler, "Hello $user" ) );
+		assertSame( changed, engine.getTemplate( handler, "Bye $user" ) );
+		// Templates are cached per request handler
+		assertNotSame( changed, engine.getTemplate( new TestHandler(), "Bye $user" ) );
+	}
+
+}